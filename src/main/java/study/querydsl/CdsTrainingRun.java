@@ -0,0 +1,48 @@
+package study.querydsl;
+
+import java.util.List;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestTemplate;
+
+/**
+ * gradle appCdsArchive 의 학습 실행. 기동 후 주요 API 를 한 번씩 호출해 요청 경로의 클래스까지 로딩하고 종료한다.
+ * JVM 이 종료하면서 -XX:ArchiveClassesAtExit 로 지정한 파일에 로딩된 클래스를 덤프한다.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "app.cds.training", havingValue = "true")
+@RequiredArgsConstructor
+public class CdsTrainingRun {
+
+    private static final List<String> PATHS = List.of(
+            "/v1/members?teamName=teamA",
+            "/v3/members?ageGoe=20&size=10",
+            "/v4/members?ageLoe=30",
+            "/v5/members?size=10",
+            "/actuator/health");
+
+    private final ConfigurableApplicationContext context;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void trainAndExit() {
+        int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+        RestTemplate restTemplate = new RestTemplate();
+        for (String path : PATHS) {
+            try {
+                restTemplate.getForEntity("http://localhost:" + port + path, String.class);
+            } catch (RestClientException e) {
+                log.warn("cds training request failed. path={}", path, e);
+            }
+        }
+        System.exit(SpringApplication.exit(context, () -> 0));
+    }
+}
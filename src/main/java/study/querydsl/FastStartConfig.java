@@ -0,0 +1,35 @@
+package study.querydsl;
+
+import java.lang.reflect.Method;
+import javax.annotation.PostConstruct;
+import org.springframework.boot.LazyInitializationExcludeFilter;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Controller;
+import org.springframework.util.ReflectionUtils;
+
+/**
+ * prod 프로필(spring.main.lazy-initialization)에서도 기동 시 바로 만들어야 하는 빈을 고른다.
+ * 컨트롤러는 첫 요청이 느려지지 않도록, @Scheduled 와 @PostConstruct 로 등록만 하는 빈은 아예 동작하지 않게 되므로 제외한다.
+ */
+@Configuration(proxyBeanMethods = false)
+public class FastStartConfig {
+
+    @Bean
+    static LazyInitializationExcludeFilter eagerBeans() {
+        return (beanName, beanDefinition, beanType) -> beanType != null
+                && (AnnotatedElementUtils.hasAnnotation(beanType, Controller.class) || hasLifecycleMethod(beanType));
+    }
+
+    private static boolean hasLifecycleMethod(Class<?> beanType) {
+        for (Method method : ReflectionUtils.getUniqueDeclaredMethods(beanType, ReflectionUtils.USER_DECLARED_METHODS)) {
+            if (AnnotatedElementUtils.hasAnnotation(method, Scheduled.class)
+                    || method.isAnnotationPresent(PostConstruct.class)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
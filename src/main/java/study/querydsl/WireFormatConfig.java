@@ -0,0 +1,52 @@
+package study.querydsl;
+
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileGenerator;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * JSON 외에 Accept 로 고를 수 있는 바이너리 응답 형식.
+ * application/x-jackson-smile, application/cbor 를 요청하면 같은 DTO/시리얼라이저로 해당 형식을 쓴다.
+ * Smile 은 짧은 문자열 값 back-reference 를 켜서, row 마다 반복되는 팀 이름을 한 번만 싣는다.
+ * 압축은 server.compression 에서 크기 기준으로 건다.
+ */
+@Configuration(proxyBeanMethods = false)
+public class WireFormatConfig implements WebMvcConfigurer {
+
+    // 스프링 기본 converter 와 같은 타입이라 기본 것 자리에 대신 들어간다. builder 는 부트 설정이 적용된 prototype 빈
+    @Bean
+    MappingJackson2SmileHttpMessageConverter smileHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        SmileFactory factory = SmileFactory.builder()
+                .enable(SmileGenerator.Feature.CHECK_SHARED_STRING_VALUES)
+                .build();
+        return new MappingJackson2SmileHttpMessageConverter(builder.factory(factory).build());
+    }
+
+    @Bean
+    MappingJackson2CborHttpMessageConverter cborHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2CborHttpMessageConverter(builder.factory(new CBORFactory()).build());
+    }
+
+    // 같은 URL 이 Accept 에 따라 다른 표현을 내보내므로, 캐시가 형식별로 나눠 저장하게 한다. ETag 도 형식별로 다르다
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(new HandlerInterceptor() {
+            @Override
+            public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+                response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+                return true;
+            }
+        }).addPathPatterns("/v*/members");
+    }
+}
@@ -0,0 +1,39 @@
+package study.querydsl.controller;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import study.querydsl.dto.BulkLoadSpec;
+import study.querydsl.service.BulkDataLoader;
+import study.querydsl.service.BulkDataLoader.Progress;
+
+@Profile("perf")
+@RestController
+@RequestMapping("/admin/bulk-load")
+@RequiredArgsConstructor
+public class BulkLoadController {
+
+    private final BulkDataLoader bulkDataLoader;
+
+    @PostMapping // 본문이 없으면 BulkLoadSpec 기본값(100만 건)으로 적재
+    public Progress load(@RequestBody(required = false) BulkLoadSpec spec) {
+        try {
+            return bulkDataLoader.start(spec == null ? new BulkLoadSpec() : spec);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        } catch (IllegalStateException e) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, e.getMessage());
+        }
+    }
+
+    @GetMapping
+    public Progress progress() {
+        return bulkDataLoader.getProgress();
+    }
+}
@@ -1,10 +1,12 @@
 package study.querydsl.controller;
 
-import javax.annotation.PostConstruct;
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
 import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
 import org.springframework.context.annotation.Profile;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.annotation.Transactional;
 import study.querydsl.entity.Member;
@@ -12,14 +14,18 @@ import study.querydsl.entity.Team;
 
 @Profile("local")
 @Component
+@ConditionalOnProperty(name = "member.seed.enabled", havingValue = "true", matchIfMissing = true)
 @RequiredArgsConstructor
 public class InitMember {
 
     private final InitMemberService initMemberService;
 
-    @PostConstruct
+    // 기동을 막지 않도록 ready 이후 별도 스레드에서 넣는다. member.seed.enabled=false 면 넣지 않는다
+    @EventListener(ApplicationReadyEvent.class)
     public void init() {
-        initMemberService.init();
+        Thread thread = new Thread(initMemberService::init, "member-seed");
+        thread.setDaemon(true);
+        thread.start();
     }
 
     @Component
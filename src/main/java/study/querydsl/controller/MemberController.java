@@ -1,36 +1,143 @@
 package study.querydsl.controller;
 
+import com.querydsl.core.types.Predicate;
+import java.io.IOException;
 import java.util.List;
+import java.util.Map;
+import javax.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.querydsl.binding.QuerydslPredicate;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.util.MultiValueMap;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.server.ResponseStatusException;
+import study.querydsl.dto.CountStrategy;
+import study.querydsl.dto.MemberCountedPage;
 import study.querydsl.dto.MemberSearchCond;
+import study.querydsl.dto.MemberSearchShapeStat;
+import study.querydsl.dto.MemberTeamColumnar;
+import study.querydsl.dto.MemberTeamColumns;
 import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.entity.Member;
+import study.querydsl.repository.CoalescingMemberRepository;
+import study.querydsl.repository.MemberColumnsRepository;
 import study.querydsl.repository.MemberJpaRepository;
 import study.querydsl.repository.MemberRepository;
+import study.querydsl.repository.MemberSearchMetrics;
 
 @RestController
 @RequiredArgsConstructor
 public class MemberController {
 
+    // or 로 묶는 조건이 많아지면 플랜이 나빠지고 결과도 커진다
+    private static final int MAX_BATCH_CONDITIONS = 20;
+
     private final MemberJpaRepository memberJpaRepository;
-    private final MemberRepository memberRepository;
+    private final CoalescingMemberRepository coalescingMemberRepository;
+    private final MemberColumnsRepository memberColumnsRepository;
+    private final MemberPageJsonWriter memberPageJsonWriter;
+    private final MemberQueryGuard memberQueryGuard;
+    private final MemberSearchMetrics memberSearchMetrics;
+    private final MemberSearchETag memberSearchETag;
+
+    // v1~v4, v6 는 If-None-Match 가 현재 ETag 와 같으면 조회하지 않고 304 (null 반환)
 
     @GetMapping("/v1/members")
-    public List<MemberTeamDto> searchMemberV1(MemberSearchCond cond) {
+    public List<MemberTeamDto> searchMemberV1(MemberSearchCond cond, WebRequest request) {
+        if (request.checkNotModified(memberSearchETag.of("v1", cond, Pageable.unpaged(),
+                request.getHeader(HttpHeaders.ACCEPT)))) {
+            return null;
+        }
         return memberJpaRepository.search(cond);
     }
 
+    @PostMapping("/v1/members/batch") // 본문은 MemberSearchCond 배열. 같은 순서로 조건별 결과 배열을 돌려준다
+    public List<List<MemberTeamDto>> searchMemberBatch(@RequestBody List<MemberSearchCond> conds) {
+        if (conds.size() > MAX_BATCH_CONDITIONS) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "too many conditions: " + conds.size() + " > " + MAX_BATCH_CONDITIONS);
+        }
+        return coalescingMemberRepository.searchBatch(conds);
+    }
+
     @GetMapping("/v2/members")
-    public Page<MemberTeamDto> searchMemberV2(MemberSearchCond cond, Pageable pageable) {
-        return memberRepository.searchPageSimple(cond, pageable);
+    public Page<MemberTeamDto> searchMemberV2(MemberSearchCond cond, Pageable pageable, WebRequest request) {
+        if (request.checkNotModified(memberSearchETag.of("v2", cond, pageable,
+                request.getHeader(HttpHeaders.ACCEPT)))) {
+            return null;
+        }
+        return coalescingMemberRepository.searchPageSimple(cond, pageable);
     }
 
     @GetMapping("/v3/members")
-    public Page<MemberTeamDto> searchMemberV3(MemberSearchCond cond, Pageable pageable) {
-        return memberRepository.searchPageComplex(cond, pageable);
+    public Page<MemberTeamDto> searchMemberV3(MemberSearchCond cond, Pageable pageable, WebRequest request) {
+        if (request.checkNotModified(memberSearchETag.of("v3", cond, pageable,
+                request.getHeader(HttpHeaders.ACCEPT)))) {
+            return null;
+        }
+        return coalescingMemberRepository.searchPageComplex(cond, pageable);
+    }
+
+    @GetMapping("/v4/members") // v1 과 같은 응답. 대량 조회용
+    public MemberTeamColumns searchMemberV4(MemberSearchCond cond, WebRequest request) {
+        if (request.checkNotModified(memberSearchETag.of("v4", cond, Pageable.unpaged(),
+                request.getHeader(HttpHeaders.ACCEPT)))) {
+            return null;
+        }
+        return memberColumnsRepository.search(cond);
+    }
+
+    @GetMapping("/v6/members") // v4 와 같은 조건. 컬럼 배열 + 팀 사전 모양. Smile/CBOR 로도 받을 수 있다
+    public MemberTeamColumnar searchMemberV6(MemberSearchCond cond, WebRequest request) {
+        if (request.checkNotModified(memberSearchETag.of("v6", cond, Pageable.unpaged(),
+                request.getHeader(HttpHeaders.ACCEPT)))) {
+            return null;
+        }
+        return new MemberTeamColumnar(memberColumnsRepository.search(cond));
+    }
+
+    @GetMapping("/v5/members") // v3 과 같은 조건. PageImpl 대신 MemberPageResponse 모양으로 스트리밍
+    public void searchMemberV5(MemberSearchCond cond, Pageable pageable, HttpServletResponse response)
+            throws IOException {
+        memberPageJsonWriter.write(cond, pageable, response);
+    }
+
+    @GetMapping("/v7/members") // v3 과 같은 조건. ?count=exact|capped|estimated|none 으로 total 을 구하는 방법을 고른다
+    public MemberCountedPage searchMemberV7(MemberSearchCond cond, Pageable pageable,
+            @RequestParam(required = false) String count) {
+        CountStrategy strategy;
+        try {
+            strategy = CountStrategy.parse(count);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "unknown count strategy: " + count);
+        }
+        return coalescingMemberRepository.searchPageCounted(cond, pageable, strategy);
+    }
+
+    @GetMapping("/members/query") // ex) ?username=member1*&age=10&age=20&team.name=teamA
+    public Page<MemberTeamDto> queryMembers(
+            @QuerydslPredicate(root = Member.class, bindings = MemberRepository.class) Predicate predicate,
+            @RequestParam MultiValueMap<String, String> params, Pageable pageable) {
+        Pageable capped = memberQueryGuard.check(params, pageable);
+        return coalescingMemberRepository.searchByPredicate(predicate, capped);
+    }
+
+    @GetMapping("/members/query/shapes")
+    public Map<String, Long> queryShapes() {
+        return memberQueryGuard.shapeHits();
+    }
+
+    @GetMapping("/members/search/shapes") // MemberSearchCond 모양별 지연/건수. 총 소요 시간 순
+    public List<MemberSearchShapeStat> searchShapes() {
+        return memberSearchMetrics.stats();
     }
 
 
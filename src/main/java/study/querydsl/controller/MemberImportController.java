@@ -0,0 +1,38 @@
+package study.querydsl.controller;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collection;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import study.querydsl.service.MemberCsvImporter;
+import study.querydsl.service.MemberCsvImporter.Progress;
+
+@RestController
+@RequestMapping("/admin/member-import")
+@RequiredArgsConstructor
+public class MemberImportController {
+
+    private final MemberCsvImporter memberCsvImporter;
+
+    // ex) curl -X POST -H 'Content-Type: text/csv' --data-binary @members.csv
+    // 본문은 읽는 대로 chunk 단위로 커밋한다. 응답은 끝난 뒤의 건수와 오류 줄
+    @PostMapping(consumes = "text/csv")
+    public Progress importMembers(InputStream body) throws IOException {
+        try {
+            return memberCsvImporter.importCsv(body);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
+    @GetMapping // 진행 중인 import 들의 진행 상황
+    public Collection<Progress> running() {
+        return memberCsvImporter.getRunning();
+    }
+}
@@ -0,0 +1,99 @@
+package study.querydsl.controller;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import javax.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import study.querydsl.dto.MemberPageResponse;
+import study.querydsl.dto.MemberSearchCond;
+import study.querydsl.dto.MemberTeamColumnsSerializer;
+import study.querydsl.repository.MemberColumnsRepository;
+
+/**
+ * 검색 결과를 ResultSet 에서 읽는 대로 MemberPageResponse 모양의 JSON 으로 쓴다.
+ * 중간 리스트/DTO 없이 스레드별로 재사용하는 버퍼에 쓰고, Content-Length 와 함께 한 번에 내보낸다.
+ */
+@Component
+@RequiredArgsConstructor
+public class MemberPageJsonWriter {
+
+    // 너무 커진 버퍼는 스레드에 붙잡아두지 않는다
+    private static final int MAX_RETAINED_BYTES = 1 << 20;
+    private static final ThreadLocal<PooledBuffer> BUFFERS = ThreadLocal.withInitial(PooledBuffer::new);
+
+    private final MemberColumnsRepository memberColumnsRepository;
+    private final ObjectMapper objectMapper;
+
+    public void write(MemberSearchCond cond, Pageable pageable, HttpServletResponse response) throws IOException {
+        PooledBuffer buffer = BUFFERS.get();
+        buffer.reset();
+        try {
+            writeTo(buffer, cond, pageable);
+            response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            response.setContentLength(buffer.size());
+            buffer.writeTo(response.getOutputStream());
+        } finally {
+            if (buffer.capacity() > MAX_RETAINED_BYTES) {
+                BUFFERS.remove();
+            }
+        }
+    }
+
+    void writeTo(ByteArrayOutputStream out, MemberSearchCond cond, Pageable pageable) throws IOException {
+        try (JsonGenerator gen = objectMapper.getFactory().createGenerator(out)) {
+            gen.writeStartObject();
+            gen.writeArrayFieldStart(MemberPageResponse.CONTENT);
+            int rows;
+            try {
+                rows = memberColumnsRepository.streamPage(cond, pageable,
+                        (memberId, username, age, hasTeam, teamId, teamName) -> MemberTeamColumnsSerializer
+                                .writeRow(gen, memberId, username, age, hasTeam, teamId, teamName));
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            gen.writeEndArray();
+
+            long total = total(cond, pageable, rows);
+            gen.writeNumberField(MemberPageResponse.SIZE, rows);
+            gen.writeNumberField(MemberPageResponse.TOTAL, total);
+            gen.writeFieldName(MemberPageResponse.NEXT_CURSOR);
+            if (pageable.isPaged() && pageable.getOffset() + rows < total) {
+                gen.writeNumber(pageable.getPageNumber() + 1);
+            } else {
+                gen.writeNull();
+            }
+            gen.writeEndObject();
+        }
+    }
+
+    // PageableExecutionUtils.getPage 와 같은 규칙으로, 알 수 있으면 count 쿼리를 생략한다
+    private long total(MemberSearchCond cond, Pageable pageable, int rows) {
+        if (pageable.isUnpaged()) {
+            return rows;
+        }
+        if (rows != 0 && rows < pageable.getPageSize()) {
+            return pageable.getOffset() + rows;
+        }
+        if (pageable.getOffset() == 0 && rows < pageable.getPageSize()) {
+            return rows;
+        }
+        return memberColumnsRepository.count(cond);
+    }
+
+    private static class PooledBuffer extends ByteArrayOutputStream {
+
+        PooledBuffer() {
+            super(8 * 1024);
+        }
+
+        int capacity() {
+            return buf.length;
+        }
+    }
+}
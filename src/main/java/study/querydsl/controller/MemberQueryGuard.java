@@ -0,0 +1,110 @@
+package study.querydsl.controller;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MultiValueMap;
+import org.springframework.web.server.ResponseStatusException;
+import study.querydsl.repository.MemberSort;
+
+/**
+ * /members/query 요청을 QuerydslBindings 로 넘기기 전에 검사한다.
+ * 화이트리스트 밖의 파라미터, 인덱스를 못 타는 조건(앞이 * 인 like 등)은 400 으로 거절하고 page size 는 상한으로 자른다.
+ * sort 는 MemberSort 화이트리스트에 있는 키만 남긴다.
+ * 조건 값은 Querydsl 이 파라미터로 바인딩하므로 같은 shape 은 같은 JPQL 이 되어 하이버네이트 plan cache 를 재사용한다.
+ * 통과한 shape 별 사용 횟수를 여기서 세어둔다. 거절한 요청은 세지 않는다.
+ */
+@Component
+public class MemberQueryGuard {
+
+    private static final Set<String> FILTER_PARAMS = Set.of("username", "age", "team.name");
+    private static final Set<String> PAGING_PARAMS = Set.of("page", "size", "sort");
+
+    private final int maxPageSize;
+    private final Map<String, Shape> shapes = new ConcurrentHashMap<>();
+
+    public MemberQueryGuard(@Value("${member.query.max-page-size:100}") int maxPageSize) {
+        this.maxPageSize = maxPageSize;
+    }
+
+    public Pageable check(MultiValueMap<String, String> params, Pageable pageable) {
+        // 거절할 요청은 캐시에 넣지 않는다. 모르는 파라미터 이름으로 key 가 끝없이 늘어날 수 있다
+        String rejectReason = rejectReason(params);
+        if (rejectReason != null) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, rejectReason);
+        }
+        // 인덱스 없는 컬럼으로 정렬하면 filesort 가 생기므로 화이트리스트 키만 넘긴다
+        Sort sort = MemberSort.supported(pageable.getSort());
+        shapes.computeIfAbsent(shapeKey(params, sort), key -> new Shape()).hits.increment();
+        return PageRequest.of(pageable.getPageNumber(), Math.min(pageable.getPageSize(), maxPageSize), sort);
+    }
+
+    public Map<String, Long> shapeHits() {
+        Map<String, Long> result = new TreeMap<>();
+        shapes.forEach((key, shape) -> result.put(key, shape.hits.sum()));
+        return result;
+    }
+
+    private static String rejectReason(MultiValueMap<String, String> params) {
+        for (Map.Entry<String, List<String>> entry : params.entrySet()) {
+            String name = entry.getKey();
+            List<String> values = entry.getValue();
+            if (PAGING_PARAMS.contains(name)) {
+                continue;
+            }
+            if (!FILTER_PARAMS.contains(name)) {
+                return "unsupported parameter: " + name;
+            }
+            if (values.size() > (name.equals("age") ? 2 : 1)) {
+                return "too many values: " + name;
+            }
+            if (name.equals("username") && values.get(0).startsWith("*")) {
+                return "leading wildcard can't use an index: username";
+            }
+        }
+        return null;
+    }
+
+    // 파라미터 이름과 연산 종류만으로 shape 을 만든다. 값 자체는 key 에 들어가지 않는다.
+    // rejectReason 을 통과한 파라미터만 오므로 key 는 화이트리스트 조합 수만큼만 생긴다.
+    // 정렬은 첫 번째 키만 쓰이므로 그것만 넣는다
+    private static String shapeKey(MultiValueMap<String, String> params, Sort sort) {
+        List<String> parts = new ArrayList<>();
+        for (Map.Entry<String, List<String>> entry : params.entrySet()) {
+            String name = entry.getKey();
+            List<String> values = entry.getValue();
+            if (PAGING_PARAMS.contains(name)) {
+                continue;
+            }
+            if (name.equals("username")) {
+                parts.add(values.get(0).endsWith("*") ? "username:prefix" : "username:eq");
+            } else if (name.equals("age")) {
+                parts.add(values.size() == 2 ? "age:between" : "age:eq");
+            } else {
+                parts.add(name + ":eq");
+            }
+        }
+        Collections.sort(parts);
+        for (Sort.Order order : sort) {
+            parts.add("sort:" + order.getProperty() + (order.isAscending() ? "" : ",desc"));
+            break;
+        }
+        return String.join(",", parts);
+    }
+
+    private static final class Shape {
+
+        private final LongAdder hits = new LongAdder();
+    }
+}
@@ -0,0 +1,90 @@
+package study.querydsl.controller;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
+import org.springframework.util.StringUtils;
+import study.querydsl.dto.MemberSearchCond;
+import study.querydsl.repository.MemberChangeFeed;
+
+/**
+ * 회원 검색 응답의 ETag. MemberChangeFeed 의 sequence(Member/Team 커밋마다, 벌크 포함 1 증가)와
+ * 정규화한 조건/페이지, Accept 로 고른 응답 형식(JSON/Smile/CBOR)으로 만든다.
+ * 데이터가 안 바뀌었으면 같은 값이므로 조회 없이 304 로 답할 수 있다.
+ * sequence 는 프로세스 안에서만 세므로 재시작하면 epoch 가 바뀌어 이전 ETag 는 모두 어긋난다.
+ * sequence 는 커밋 직후에 올라가므로, 그 짧은 사이에는 304 가 한 번 더 나갈 수 있다.
+ * 피드를 거치지 않는 쓰기(MemberBulkRepository 밖의 queryFactory.update()/delete(), 직접 SQL, 다른 프로세스)는
+ * sequence 를 올리지 못하므로 max-age 구간마다 값이 바뀌게 해서 오래된 304 가 그 이상 나가지 않게 한다.
+ * team_stat 은 검색 응답에 들어가지 않으므로 TeamStatReconciler 의 쓰기는 ETag 와 무관하다.
+ */
+@Component
+public class MemberSearchETag {
+
+    private static final List<MediaType> PRODUCIBLE = List.of(MediaType.APPLICATION_JSON,
+            new MediaType("application", "x-jackson-smile"), new MediaType("application", "cbor"));
+
+    private final String epoch = UUID.randomUUID().toString().substring(0, 8);
+    private final MemberChangeFeed changeFeed;
+    private final long maxAgeMillis;
+
+    public MemberSearchETag(MemberChangeFeed changeFeed,
+            @Value("${member.search.etag.max-age-seconds:60}") long maxAgeSeconds) {
+        this.changeFeed = changeFeed;
+        this.maxAgeMillis = TimeUnit.SECONDS.toMillis(Math.max(1, maxAgeSeconds));
+    }
+
+    // 조회보다 먼저 읽어야 한다. 조회 중 커밋된 변경은 다음 요청에서 다른 ETag 가 된다
+    public String of(String endpoint, MemberSearchCond cond, Pageable pageable, String accept) {
+        return of(endpoint, cond, pageable, accept, System.currentTimeMillis());
+    }
+
+    String of(String endpoint, MemberSearchCond cond, Pageable pageable, String accept, long nowMillis) {
+        String key = endpoint
+                + '|' + representation(accept)
+                + '|' + normalize(cond.getUsername())
+                + '|' + normalize(cond.getUsernameContains())
+                + '|' + normalize(cond.getTeamName())
+                + '|' + cond.getAgeGoe()
+                + '|' + cond.getAgeLoe()
+                + '|' + (pageable.isPaged() ? pageable.getPageNumber() + ":" + pageable.getPageSize() : "unpaged")
+                + '|' + pageable.getSort();
+        String digest = DigestUtils.md5DigestAsHex(key.getBytes(StandardCharsets.UTF_8));
+        return "W/\"" + epoch + '-' + changeFeed.lastSequence() + '-' + nowMillis / maxAgeMillis + '-' + digest + '"';
+    }
+
+    /**
+     * Accept 에 대해 메시지 컨버터가 고를 형식. 품질/구체성 순으로 보면서 컨버터 순서(JSON, Smile, CBOR)대로 처음 맞는 것.
+     * 형식마다 본문 바이트가 다르므로 같은 ETag 를 쓰면 안 된다.
+     */
+    static MediaType representation(String accept) {
+        List<MediaType> accepted;
+        try {
+            accepted = new ArrayList<>(StringUtils.hasText(accept)
+                    ? MediaType.parseMediaTypes(accept) : List.of(MediaType.ALL));
+        } catch (InvalidMediaTypeException e) {
+            return MediaType.APPLICATION_JSON;
+        }
+        MediaType.sortBySpecificityAndQuality(accepted);
+        for (MediaType type : accepted) {
+            for (MediaType producible : PRODUCIBLE) {
+                if (type.isCompatibleWith(producible)) {
+                    return producible;
+                }
+            }
+        }
+        return MediaType.APPLICATION_JSON;
+    }
+
+    // 빈 문자열과 null 은 같은 조건이다 (where 절에서 hasText 로 거른다)
+    private static String normalize(String value) {
+        return StringUtils.hasText(value) ? value : "";
+    }
+}
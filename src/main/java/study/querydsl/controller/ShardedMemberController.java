@@ -0,0 +1,45 @@
+package study.querydsl.controller;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import study.querydsl.dto.MemberKeysetPage;
+import study.querydsl.dto.MemberSearchCond;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.repository.ShardedMemberRepository;
+
+@RestController
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "member.shards.enabled", havingValue = "true")
+public class ShardedMemberController {
+
+    // 샤드마다 offset + size 건을 읽으므로 깊은 offset 은 막고 keyset 으로 유도한다
+    private static final long MAX_WINDOW = 10_000;
+
+    private final ShardedMemberRepository shardedMemberRepository;
+
+    @GetMapping("/shards/members")
+    public Page<MemberTeamDto> searchMembers(MemberSearchCond condition, Pageable pageable) {
+        if (pageable.isPaged() && pageable.getOffset() + pageable.getPageSize() > MAX_WINDOW) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "offset too deep for sharded search, use /shards/members/after");
+        }
+        return shardedMemberRepository.searchPage(condition, pageable);
+    }
+
+    @GetMapping("/shards/members/after") // after 는 직전 응답의 nextAfter. 처음엔 비워둔다
+    public MemberKeysetPage searchMembersAfter(MemberSearchCond condition,
+            @RequestParam(required = false) Long after,
+            @RequestParam(defaultValue = "20") int size) {
+        if (size < 1 || size > MAX_WINDOW) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "size out of range");
+        }
+        return shardedMemberRepository.searchAfter(condition, after, size);
+    }
+}
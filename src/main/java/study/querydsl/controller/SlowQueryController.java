@@ -0,0 +1,20 @@
+package study.querydsl.controller;
+
+import java.util.List;
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+import study.querydsl.dto.SlowQuery;
+import study.querydsl.repository.SlowQueryRecorder;
+
+@RestController
+@RequiredArgsConstructor
+public class SlowQueryController {
+
+    private final SlowQueryRecorder slowQueryRecorder;
+
+    @GetMapping("/admin/slow-queries") // 최근 것부터. plan 이 null 이면 EXPLAIN 진행 중이거나 select 가 아님
+    public List<SlowQuery> slowQueries() {
+        return slowQueryRecorder.recent();
+    }
+}
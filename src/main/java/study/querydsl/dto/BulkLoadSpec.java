@@ -0,0 +1,22 @@
+package study.querydsl.dto;
+
+import lombok.Data;
+
+/**
+ * 성능 환경용 대량 데이터 생성 조건. POST /admin/bulk-load 의 본문으로 받아 재시작 없이 다시 적재할 수 있다.
+ */
+@Data
+public class BulkLoadSpec {
+
+    private long members = 1_000_000;
+    private int teams = 100;
+    // 팀 크기 분포의 Zipf 지수. 0 이면 균등, 클수록 앞쪽 팀에 몰린다
+    private double teamSkew = 1.0;
+    // "최소-최대:가중치" 목록. 구간 안에서는 균등하게 뽑는다
+    private String ageHistogram = "10-19:15,20-29:35,30-39:25,40-49:15,50-79:10";
+    private int batchSize = 1_000;
+    private int chunkSize = 50_000;
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private long seed = 42;
+
+}
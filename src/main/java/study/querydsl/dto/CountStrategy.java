@@ -0,0 +1,18 @@
+package study.querydsl.dto;
+
+import java.util.Locale;
+import org.springframework.util.StringUtils;
+
+/**
+ * 페이지 응답의 total 을 어떻게 구할지.
+ * EXACT 는 count 쿼리, CAPPED 는 cap + 1 건까지만 세고, ESTIMATED 는 team_stat 으로 추정하며, NONE 은 세지 않고 다음 페이지 여부만 준다.
+ */
+public enum CountStrategy {
+
+    EXACT, CAPPED, ESTIMATED, NONE;
+
+    // ?count=capped 처럼 대소문자 구분 없이 받는다. 비어 있으면 null
+    public static CountStrategy parse(String value) {
+        return StringUtils.hasText(value) ? valueOf(value.trim().toUpperCase(Locale.ROOT)) : null;
+    }
+}
@@ -0,0 +1,21 @@
+package study.querydsl.dto;
+
+import java.util.List;
+import lombok.Data;
+
+/**
+ * count 전략을 고를 수 있는 페이지 응답.
+ * count 는 실제로 쓴 전략이다. 마지막 페이지라 결과로 total 을 알 수 있으면 요청과 달리 EXACT 가 된다.
+ * total 은 NONE 이면 null, CAPPED 에서 totalCapped 가 true 면 "total 건 이상"이다.
+ */
+@Data
+public class MemberCountedPage {
+
+    private final List<MemberTeamDto> content;
+    private final int size;
+    private final CountStrategy count;
+    private final Long total;
+    private final boolean totalCapped;
+    private final boolean hasNext;
+    private final Integer nextCursor;
+}
@@ -0,0 +1,14 @@
+package study.querydsl.dto;
+
+import java.util.List;
+import lombok.Data;
+
+/**
+ * member_id 기준 keyset 페이지. nextAfter 를 다음 요청의 after 로 넘긴다. 마지막이면 null 이다.
+ */
+@Data
+public class MemberKeysetPage {
+
+    private final List<MemberTeamDto> content;
+    private final Long nextAfter;
+}
@@ -0,0 +1,28 @@
+package study.querydsl.dto;
+
+import java.util.List;
+import lombok.Data;
+import org.springframework.data.domain.Page;
+
+/**
+ * PageImpl 대신 쓰는 간단한 페이지 응답. Pageable/Sort 메타데이터 없이 content, size, total, nextCursor 만 담는다.
+ * nextCursor 는 다음 페이지 번호이고 마지막 페이지면 null 이다.
+ */
+@Data
+public class MemberPageResponse {
+
+    public static final String CONTENT = "content";
+    public static final String SIZE = "size";
+    public static final String TOTAL = "total";
+    public static final String NEXT_CURSOR = "nextCursor";
+
+    private final List<MemberTeamDto> content;
+    private final int size;
+    private final long total;
+    private final Integer nextCursor;
+
+    public static MemberPageResponse from(Page<MemberTeamDto> page) {
+        return new MemberPageResponse(page.getContent(), page.getNumberOfElements(), page.getTotalElements(),
+                page.hasNext() ? page.getNumber() + 1 : null);
+    }
+}
@@ -6,6 +6,7 @@ import lombok.Data;
 public class MemberSearchCond {
 
     private String username;
+    private String usernameContains; // 대소문자 구분 없이 부분 일치. UsernameIndex 로 찾는다
     private String teamName;
     private Integer ageGoe;
     private Integer ageLoe;
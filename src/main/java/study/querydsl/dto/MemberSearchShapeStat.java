@@ -0,0 +1,24 @@
+package study.querydsl.dto;
+
+import lombok.Data;
+
+/**
+ * MemberSearchCond 모양(shape) 별 검색 지연/결과 건수 요약. 분위수는 최근 몇 분 구간 기준이다.
+ */
+@Data
+public class MemberSearchShapeStat {
+
+    private final String method;
+    private final String shape;
+    private final String depth;
+    private final long count;
+    private final double totalMs;
+    private final double meanMs;
+    private final double p50Ms;
+    private final double p95Ms;
+    private final double p99Ms;
+    private final double maxMs;
+    private final double meanRows;
+    private final double p99Rows;
+    private final double maxRows;
+}
@@ -0,0 +1,25 @@
+package study.querydsl.dto;
+
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+
+/**
+ * MemberTeamColumns 를 row 객체 배열 대신 컬럼 배열로 내보내는 응답.
+ * 필드명은 응답에 한 번씩만 나오고, 팀은 teams 사전에 한 번만 싣고 row 는 teamRef(사전 위치, 팀이 없으면 -1)만 가진다.
+ * <pre>
+ * {"size":3,"memberId":[1,2,3],"username":[...],"age":[...],"teamRef":[0,0,-1],
+ *  "teams":{"teamId":[100],"teamName":["teamA"]}}
+ * </pre>
+ */
+@JsonSerialize(using = MemberTeamColumnarSerializer.class)
+public class MemberTeamColumnar {
+
+    private final MemberTeamColumns columns;
+
+    public MemberTeamColumnar(MemberTeamColumns columns) {
+        this.columns = columns;
+    }
+
+    public MemberTeamColumns getColumns() {
+        return columns;
+    }
+}
@@ -0,0 +1,80 @@
+package study.querydsl.dto;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import java.io.IOException;
+
+/**
+ * MemberTeamColumnar 를 컬럼 단위로 쓴다. JsonGenerator 만 쓰므로 JSON/Smile/CBOR 어느 쪽이든 같은 모양이다.
+ */
+public class MemberTeamColumnarSerializer extends JsonSerializer<MemberTeamColumnar> {
+
+    private static final SerializedString SIZE = new SerializedString("size");
+    private static final SerializedString MEMBER_ID = new SerializedString("memberId");
+    private static final SerializedString USERNAME = new SerializedString("username");
+    private static final SerializedString AGE = new SerializedString("age");
+    private static final SerializedString TEAM_REF = new SerializedString("teamRef");
+    private static final SerializedString TEAMS = new SerializedString("teams");
+    private static final SerializedString TEAM_ID = new SerializedString("teamId");
+    private static final SerializedString TEAM_NAME = new SerializedString("teamName");
+
+    @Override
+    public void serialize(MemberTeamColumnar value, JsonGenerator gen, SerializerProvider serializers)
+            throws IOException {
+        MemberTeamColumns columns = value.getColumns();
+        int size = columns.size();
+        int teamCount = columns.teamCount();
+
+        gen.writeStartObject(value);
+        gen.writeFieldName(SIZE);
+        gen.writeNumber(size);
+
+        gen.writeFieldName(MEMBER_ID);
+        gen.writeStartArray(null, size);
+        for (int i = 0; i < size; i++) {
+            gen.writeNumber(columns.getMemberId(i));
+        }
+        gen.writeEndArray();
+
+        gen.writeFieldName(USERNAME);
+        gen.writeStartArray(null, size);
+        for (int i = 0; i < size; i++) {
+            gen.writeString(columns.getUsername(i));
+        }
+        gen.writeEndArray();
+
+        gen.writeFieldName(AGE);
+        gen.writeStartArray(null, size);
+        for (int i = 0; i < size; i++) {
+            gen.writeNumber(columns.getAge(i));
+        }
+        gen.writeEndArray();
+
+        gen.writeFieldName(TEAM_REF);
+        gen.writeStartArray(null, size);
+        for (int i = 0; i < size; i++) {
+            gen.writeNumber(columns.getTeamRef(i));
+        }
+        gen.writeEndArray();
+
+        gen.writeFieldName(TEAMS);
+        gen.writeStartObject();
+        gen.writeFieldName(TEAM_ID);
+        gen.writeStartArray(null, teamCount);
+        for (int ref = 0; ref < teamCount; ref++) {
+            gen.writeNumber(columns.getDictionaryTeamId(ref));
+        }
+        gen.writeEndArray();
+        gen.writeFieldName(TEAM_NAME);
+        gen.writeStartArray(null, teamCount);
+        for (int ref = 0; ref < teamCount; ref++) {
+            gen.writeString(columns.getDictionaryTeamName(ref));
+        }
+        gen.writeEndArray();
+        gen.writeEndObject();
+
+        gen.writeEndObject();
+    }
+}
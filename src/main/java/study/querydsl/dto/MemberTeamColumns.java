@@ -0,0 +1,184 @@
+package study.querydsl.dto;
+
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 검색 결과를 row 객체 대신 컬럼 배열로 들고 있는 컨테이너.
+ * MemberTeamDto 리스트와 같은 JSON 으로 직렬화되지만, row 마다 DTO/Long boxing/Tuple 을 만들지 않는다.
+ * 팀은 (teamId, teamName) 사전에 한 번만 저장하고 row 는 사전 위치만 가진다. 팀이 없으면 -1.
+ */
+@JsonSerialize(using = MemberTeamColumnsSerializer.class)
+public class MemberTeamColumns {
+
+    private final int size;
+    private final long[] memberIds;
+    private final String[] usernames;
+    private final int[] ages;
+    private final int[] teamRefs;
+    private final long[] teamIds;
+    private final String[] teamNames;
+
+    private MemberTeamColumns(Builder builder) {
+        this.size = builder.size;
+        this.memberIds = builder.memberIds;
+        this.usernames = builder.usernames;
+        this.ages = builder.ages;
+        this.teamRefs = builder.teamRefs;
+        this.teamIds = builder.teamIds;
+        this.teamNames = builder.teamNames;
+    }
+
+    public static Builder builder(int expectedSize) {
+        return new Builder(expectedSize);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long getMemberId(int row) {
+        return memberIds[row];
+    }
+
+    public String getUsername(int row) {
+        return usernames[row];
+    }
+
+    public int getAge(int row) {
+        return ages[row];
+    }
+
+    public boolean hasTeam(int row) {
+        return teamRefs[row] >= 0;
+    }
+
+    public Long getTeamId(int row) {
+        return hasTeam(row) ? teamIds[teamRefs[row]] : null;
+    }
+
+    public String getTeamName(int row) {
+        return hasTeam(row) ? teamNames[teamRefs[row]] : null;
+    }
+
+    public int teamCount() {
+        return teamIds.length;
+    }
+
+    // 팀 사전 위치. 팀이 없으면 -1
+    public int getTeamRef(int row) {
+        return teamRefs[row];
+    }
+
+    public long getDictionaryTeamId(int ref) {
+        return teamIds[ref];
+    }
+
+    public String getDictionaryTeamName(int ref) {
+        return teamNames[ref];
+    }
+
+    public List<MemberTeamDto> toDtoList() {
+        List<MemberTeamDto> result = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            result.add(new MemberTeamDto(memberIds[i], usernames[i], ages[i],
+                    getTeamId(i), getTeamName(i)));
+        }
+        return result;
+    }
+
+    public static class Builder {
+
+        private int size;
+        private long[] memberIds;
+        private String[] usernames;
+        private int[] ages;
+        private int[] teamRefs;
+
+        private int teamSize;
+        private long[] teamIds = new long[8];
+        private String[] teamNames = new String[8];
+        // teamId -> 사전 위치(+1). 0 은 빈 슬롯. open addressing 으로 boxing 없이 찾는다
+        private long[] slotKeys = new long[16];
+        private int[] slotValues = new int[16];
+
+        private Builder(int expectedSize) {
+            int capacity = Math.max(expectedSize, 16);
+            memberIds = new long[capacity];
+            usernames = new String[capacity];
+            ages = new int[capacity];
+            teamRefs = new int[capacity];
+        }
+
+        public Builder add(long memberId, String username, int age, long teamId, String teamName) {
+            return add(memberId, username, age, teamRef(teamId, teamName));
+        }
+
+        public Builder addWithoutTeam(long memberId, String username, int age) {
+            return add(memberId, username, age, -1);
+        }
+
+        public MemberTeamColumns build() {
+            teamIds = Arrays.copyOf(teamIds, teamSize);
+            teamNames = Arrays.copyOf(teamNames, teamSize);
+            return new MemberTeamColumns(this);
+        }
+
+        private Builder add(long memberId, String username, int age, int teamRef) {
+            if (size == memberIds.length) {
+                int capacity = size * 2;
+                memberIds = Arrays.copyOf(memberIds, capacity);
+                usernames = Arrays.copyOf(usernames, capacity);
+                ages = Arrays.copyOf(ages, capacity);
+                teamRefs = Arrays.copyOf(teamRefs, capacity);
+            }
+            memberIds[size] = memberId;
+            usernames[size] = username;
+            ages[size] = age;
+            teamRefs[size] = teamRef;
+            size++;
+            return this;
+        }
+
+        private int teamRef(long teamId, String teamName) {
+            int mask = slotKeys.length - 1;
+            int slot = Long.hashCode(teamId * 0x9E3779B97F4A7C15L) & mask;
+            while (slotValues[slot] != 0) {
+                if (slotKeys[slot] == teamId) {
+                    return slotValues[slot] - 1;
+                }
+                slot = (slot + 1) & mask;
+            }
+
+            if (teamSize == teamIds.length) {
+                teamIds = Arrays.copyOf(teamIds, teamSize * 2);
+                teamNames = Arrays.copyOf(teamNames, teamSize * 2);
+            }
+            int ref = teamSize++;
+            teamIds[ref] = teamId;
+            teamNames[ref] = teamName;
+            slotKeys[slot] = teamId;
+            slotValues[slot] = ref + 1;
+            if (teamSize * 2 > slotKeys.length) {
+                rehash();
+            }
+            return ref;
+        }
+
+        private void rehash() {
+            slotKeys = new long[slotKeys.length * 2];
+            slotValues = new int[slotValues.length * 2];
+            int mask = slotKeys.length - 1;
+            for (int ref = 0; ref < teamSize; ref++) {
+                int slot = Long.hashCode(teamIds[ref] * 0x9E3779B97F4A7C15L) & mask;
+                while (slotValues[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                slotKeys[slot] = teamIds[ref];
+                slotValues[slot] = ref + 1;
+            }
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package study.querydsl.dto;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import java.io.IOException;
+
+/**
+ * MemberTeamColumns 를 List&lt;MemberTeamDto&gt; 와 같은 모양의 JSON 배열로 바로 쓴다.
+ * 리플렉션/DTO 생성 없이 컬럼 배열에서 읽고, 필드명은 미리 인코딩해둔 것을 재사용한다.
+ */
+public class MemberTeamColumnsSerializer extends JsonSerializer<MemberTeamColumns> {
+
+    private static final SerializedString MEMBER_ID = new SerializedString("memberId");
+    private static final SerializedString USERNAME = new SerializedString("username");
+    private static final SerializedString AGE = new SerializedString("age");
+    private static final SerializedString TEAM_ID = new SerializedString("teamId");
+    private static final SerializedString TEAM_NAME = new SerializedString("teamName");
+
+    @Override
+    public void serialize(MemberTeamColumns columns, JsonGenerator gen, SerializerProvider serializers)
+            throws IOException {
+        int size = columns.size();
+        gen.writeStartArray(columns, size);
+        for (int i = 0; i < size; i++) {
+            writeRow(gen, columns.getMemberId(i), columns.getUsername(i), columns.getAge(i),
+                    columns.hasTeam(i), columns.hasTeam(i) ? columns.getDictionaryTeamId(columns.getTeamRef(i)) : 0, columns.getTeamName(i));
+        }
+        gen.writeEndArray();
+    }
+
+    // MemberTeamDto 한 건과 같은 JSON 객체를 쓴다. 스트리밍 응답(MemberPageJsonWriter)도 같이 사용
+    public static void writeRow(JsonGenerator gen, long memberId, String username, int age,
+            boolean hasTeam, long teamId, String teamName) throws IOException {
+        gen.writeStartObject();
+        gen.writeFieldName(MEMBER_ID);
+        gen.writeNumber(memberId);
+        gen.writeFieldName(USERNAME);
+        gen.writeString(username);
+        gen.writeFieldName(AGE);
+        gen.writeNumber(age);
+        gen.writeFieldName(TEAM_ID);
+        if (hasTeam) {
+            gen.writeNumber(teamId);
+        } else {
+            gen.writeNull();
+        }
+        gen.writeFieldName(TEAM_NAME);
+        gen.writeString(teamName);
+        gen.writeEndObject();
+    }
+}
@@ -0,0 +1,39 @@
+package study.querydsl.dto;
+
+import java.time.Instant;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * 임계치를 넘은 SQL 한 건. 바인드 값 중 문자열은 가린 채로 보관한다.
+ * plan 은 비동기 EXPLAIN 이 끝나면 채워진 새 인스턴스로 바뀐다.
+ */
+@Getter
+@ToString
+public class SlowQuery {
+
+    private final long sequence;
+    private final Instant executedAt;
+    private final long elapsedMillis;
+    private final String source;
+    private final String sql;
+    private final String sqlWithValues;
+    private final String error;
+    private final String plan;
+
+    public SlowQuery(long sequence, Instant executedAt, long elapsedMillis, String source, String sql,
+            String sqlWithValues, String error, String plan) {
+        this.sequence = sequence;
+        this.executedAt = executedAt;
+        this.elapsedMillis = elapsedMillis;
+        this.source = source;
+        this.sql = sql;
+        this.sqlWithValues = sqlWithValues;
+        this.error = error;
+        this.plan = plan;
+    }
+
+    public SlowQuery withPlan(String plan) {
+        return new SlowQuery(sequence, executedAt, elapsedMillis, source, sql, sqlWithValues, error, plan);
+    }
+}
@@ -2,16 +2,28 @@ package study.querydsl.entity;
 
 import javax.persistence.Column;
 import javax.persistence.Entity;
+import javax.persistence.EntityListeners;
 import javax.persistence.FetchType;
 import javax.persistence.GeneratedValue;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.JoinColumn;
 import javax.persistence.ManyToOne;
+import javax.persistence.Table;
+import javax.persistence.Version;
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.Setter;
 import lombok.ToString;
+import org.hibernate.Hibernate;
+import study.querydsl.repository.MemberIndexListener;
 
 @Entity
+@EntityListeners(MemberIndexListener.class)
+@Table(indexes = {
+        @Index(name = "idx_member_username", columnList = "username"),
+        @Index(name = "idx_member_age", columnList = "age")
+})
 @Getter
 @Setter
 @ToString(of = {"id", "username", "age"})
@@ -30,6 +42,10 @@ public class Member {
     @JoinColumn(name = "team_id")
     private Team team;
 
+    @Version
+    @Setter(AccessLevel.NONE)
+    private long version;
+
     public Member(String username) {
         this.username = username;
     }
@@ -50,8 +66,15 @@ public class Member {
     protected Member() {
     }
 
-    private void changeTeam(Team team) {
+    // 연관관계의 주인은 member.team_id 다. Team.members 는 이미 로딩된 경우에만 맞춰주고, 로딩을 일으키지는 않는다
+    // null 이면 팀에서 빠진다
+    public void changeTeam(Team team) {
+        if (this.team != null && Hibernate.isInitialized(this.team)) {
+            this.team.removeLoadedMember(this);
+        }
         this.team = team;
-        team.getMembers().add(this);
+        if (team != null && Hibernate.isInitialized(team)) {
+            team.addLoadedMember(this);
+        }
     }
 }
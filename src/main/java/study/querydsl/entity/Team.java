@@ -4,14 +4,24 @@ import java.util.ArrayList;
 import java.util.List;
 import javax.persistence.Column;
 import javax.persistence.Entity;
+import javax.persistence.EntityListeners;
 import javax.persistence.GeneratedValue;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.OneToMany;
+import javax.persistence.Table;
+import javax.persistence.Version;
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.Setter;
 import lombok.ToString;
+import org.hibernate.Hibernate;
+import org.hibernate.annotations.OptimisticLock;
+import study.querydsl.repository.MemberIndexListener;
 
 @Entity
+@EntityListeners(MemberIndexListener.class)
+@Table(indexes = @Index(name = "idx_team_name", columnList = "name"))
 @Getter
 @Setter
 @ToString(of = {"id", "name"})
@@ -24,7 +34,13 @@ public class Team {
 
     private String name;
 
+    @Version
+    @Setter(AccessLevel.NONE)
+    private long version;
+
+    // member 가 팀을 옮겨도 컬렉션 변경으로 Team 의 버전이 오르지 않게 한다. 같은 팀으로 동시에 옮겨도 충돌하지 않는다
     @OneToMany(mappedBy = "team")
+    @OptimisticLock(excluded = true)
     List<Member> members = new ArrayList<>();
 
     protected Team() {
@@ -33,4 +49,18 @@ public class Team {
     public Team(String name) {
         this.name = name;
     }
+
+    // members 가 아직 로딩되지 않았으면(PersistentBag 미초기화) 건드리지 않는다.
+    // 나중에 로딩될 때 member.team_id 기준으로 읽히므로, 같은 영속성 컨텍스트에서 읽으려면 먼저 flush 해야 한다
+    void addLoadedMember(Member member) {
+        if (Hibernate.isInitialized(members)) {
+            members.add(member);
+        }
+    }
+
+    void removeLoadedMember(Member member) {
+        if (Hibernate.isInitialized(members)) {
+            members.remove(member);
+        }
+    }
 }
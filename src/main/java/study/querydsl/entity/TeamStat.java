@@ -0,0 +1,36 @@
+package study.querydsl.entity;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * 팀별 멤버 수/나이 통계 요약 테이블.
+ * member 를 매번 group by 하지 않도록 TeamStatEventListener 가 증분으로 갱신한다.
+ */
+@Entity
+@Getter
+@ToString
+public class TeamStat {
+
+    @Id
+    @Column(name = "team_id")
+    private Long teamId;
+
+    private long memberCount;
+
+    private long ageSum;
+
+    private Integer ageMin;
+
+    private Integer ageMax;
+
+    protected TeamStat() {
+    }
+
+    public TeamStat(Long teamId) {
+        this.teamId = teamId;
+    }
+}
@@ -0,0 +1,139 @@
+package study.querydsl.repository;
+
+import com.querydsl.core.types.Predicate;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+import lombok.EqualsAndHashCode;
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Component;
+import study.querydsl.dto.CountStrategy;
+import study.querydsl.dto.MemberCountedPage;
+import study.querydsl.dto.MemberSearchCond;
+import study.querydsl.dto.MemberTeamDto;
+
+/**
+ * MemberRepositoryCustom 앞단의 single-flight 계층.
+ * 동일한 조건/페이지로 동시에 들어온 검색은 한 번의 DB 실행 결과를 공유한다.
+ * ttl 로 보관 중인 결과는 Member/Team 변경이 커밋되면 버린다.
+ * 공유하는 결과는 건드리지 않고, 호출자마다 목록과 DTO 를 복사해서 준다. 한 호출자가 고쳐도 다른 호출자와 캐시에 번지지 않는다.
+ */
+@Component
+public class CoalescingMemberRepository implements MemberRepositoryCustom, MemberChangeSubscriber {
+
+    private static final String METRIC_NAME = "member.search.coalescing";
+
+    private final MemberRepository memberRepository;
+    private final MeterRegistry meterRegistry;
+    private final SingleFlight<SearchKey, Object> singleFlight;
+
+    public CoalescingMemberRepository(MemberRepository memberRepository, MeterRegistry meterRegistry,
+            @Value("${member.search.coalescing.ttl-ms:0}") long ttlMillis) {
+        this.memberRepository = memberRepository;
+        this.meterRegistry = meterRegistry;
+        this.singleFlight = new SingleFlight<>(ttlMillis);
+    }
+
+    @Override
+    public List<MemberTeamDto> search(MemberSearchCond cond) {
+        return coalesce("search", cond, Pageable.unpaged(), () -> memberRepository.search(cond),
+                CoalescingMemberRepository::copyRows);
+    }
+
+    @Override
+    public List<MemberTeamDto> searchFromDb(MemberSearchCond cond, long limit) {
+        return memberRepository.searchFromDb(cond, limit);
+    }
+
+    @Override
+    public List<List<MemberTeamDto>> searchBatch(List<MemberSearchCond> conds) {
+        return memberRepository.searchBatch(conds);
+    }
+
+    @Override
+    public Page<MemberTeamDto> searchPageSimple(MemberSearchCond cond, Pageable pageable) {
+        return coalesce("searchPageSimple", cond, pageable,
+                () -> memberRepository.searchPageSimple(cond, pageable), CoalescingMemberRepository::copyPage);
+    }
+
+    @Override
+    public Page<MemberTeamDto> searchPageComplex(MemberSearchCond cond, Pageable pageable) {
+        return coalesce("searchPageComplex", cond, pageable,
+                () -> memberRepository.searchPageComplex(cond, pageable), CoalescingMemberRepository::copyPage);
+    }
+
+    @Override
+    public Page<MemberTeamDto> searchByPredicate(Predicate predicate, Pageable pageable) {
+        return memberRepository.searchByPredicate(predicate, pageable);
+    }
+
+    @Override
+    public MemberCountedPage searchPageCounted(MemberSearchCond cond, Pageable pageable, CountStrategy strategy) {
+        return coalesce("searchPageCounted:" + strategy, cond, pageable,
+                () -> memberRepository.searchPageCounted(cond, pageable, strategy),
+                CoalescingMemberRepository::copyCounted);
+    }
+
+    // 새로 조건에 맞게 된 행은 결과만 봐서는 알 수 없으므로 보관 중인 결과를 모두 버린다
+    @Override
+    public void onChange(MemberChangeEvent event) {
+        singleFlight.clearCompleted();
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T coalesce(String method, MemberSearchCond cond, Pageable pageable, Supplier<T> loader,
+            UnaryOperator<T> copier) {
+        SearchKey key = new SearchKey(method, copyOf(cond), pageable);
+        T shared = (T) singleFlight.execute(key, loader::get,
+                outcome -> meterRegistry.counter(METRIC_NAME,
+                        "method", method,
+                        "outcome", outcome.name().toLowerCase(Locale.ROOT)).increment());
+        return copier.apply(shared);
+    }
+
+    private static List<MemberTeamDto> copyRows(List<MemberTeamDto> rows) {
+        List<MemberTeamDto> copy = new ArrayList<>(rows.size());
+        for (MemberTeamDto row : rows) {
+            copy.add(new MemberTeamDto(row.getMemberId(), row.getUsername(), row.getAge(), row.getTeamId(),
+                    row.getTeamName()));
+        }
+        return copy;
+    }
+
+    private static Page<MemberTeamDto> copyPage(Page<MemberTeamDto> page) {
+        return new PageImpl<>(copyRows(page.getContent()), page.getPageable(), page.getTotalElements());
+    }
+
+    private static MemberCountedPage copyCounted(MemberCountedPage page) {
+        return new MemberCountedPage(copyRows(page.getContent()), page.getSize(), page.getCount(), page.getTotal(),
+                page.isTotalCapped(), page.isHasNext(), page.getNextCursor());
+    }
+
+    // 키로 쓰는 동안 호출자가 cond 를 바꿔도 영향이 없도록 복사해둔다
+    private static MemberSearchCond copyOf(MemberSearchCond cond) {
+        MemberSearchCond copy = new MemberSearchCond();
+        BeanUtils.copyProperties(cond, copy);
+        return copy;
+    }
+
+    @EqualsAndHashCode
+    private static final class SearchKey {
+
+        private final String method;
+        private final MemberSearchCond cond;
+        private final Pageable pageable;
+
+        SearchKey(String method, MemberSearchCond cond, Pageable pageable) {
+            this.method = method;
+            this.cond = cond;
+            this.pageable = pageable;
+        }
+    }
+}
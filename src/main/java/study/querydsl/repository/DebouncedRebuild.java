@@ -0,0 +1,59 @@
+package study.querydsl.repository;
+
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * invalidate 된 인메모리 인덱스를 delay 뒤에 별도 스레드에서 다시 만든다.
+ * delay 안에 들어온 요청은 한 번으로 합치고, 도는 중에 들어온 요청은 끝난 뒤 한 번 더 돌린다.
+ * 실행할 때 이미 ready 면(그 사이 누가 rebuild 했으면) 건너뛰고, 실패하면 delay 뒤에 다시 시도한다.
+ */
+@Slf4j
+final class DebouncedRebuild {
+
+    private final String name;
+    private final long delayMillis;
+    private final BooleanSupplier ready;
+    private final Runnable rebuild;
+    private final ScheduledThreadPoolExecutor executor;
+    private final AtomicBoolean pending = new AtomicBoolean();
+
+    DebouncedRebuild(String name, long delayMillis, BooleanSupplier ready, Runnable rebuild) {
+        this.name = name;
+        this.delayMillis = Math.max(0, delayMillis);
+        this.ready = ready;
+        this.rebuild = rebuild;
+        // 스레드는 첫 요청 때 만들어진다
+        this.executor = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, name + "-rebuild");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    void request() {
+        if (pending.compareAndSet(false, true)) {
+            executor.schedule(this::run, delayMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void run() {
+        pending.set(false);
+        if (ready.getAsBoolean()) {
+            return;
+        }
+        try {
+            rebuild.run();
+        } catch (RuntimeException e) {
+            log.warn("{} rebuild failed, retrying in {}ms", name, delayMillis, e);
+            request();
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package study.querydsl.repository;
+
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * 인메모리 인덱스와 트랜잭션의 경계를 맞추는 헬퍼.
+ */
+final class IndexSync {
+
+    private IndexSync() {
+    }
+
+    // 트랜잭션이 있으면 커밋 후에, 없으면 바로 실행한다. 롤백된 변경이 인덱스에 들어가지 않게 한다
+    static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    // 쓰기 트랜잭션 안에서는 아직 커밋되지 않은 자기 변경을 봐야 하므로 인덱스 대신 DB 로 조회한다
+    static boolean inReadWriteTransaction() {
+        return TransactionSynchronizationManager.isActualTransactionActive()
+                && !TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+    }
+
+    // afterCommit 안에서는 커밋이 끝난 트랜잭션의 EntityManager 가 아직 묶여 있으므로 다시 읽을 때는 새 트랜잭션을 연다
+    static TransactionTemplate reloadTransaction(PlatformTransactionManager transactionManager) {
+        TransactionTemplate template = new TransactionTemplate(transactionManager);
+        template.setReadOnly(true);
+        template.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        return template;
+    }
+}
@@ -0,0 +1,103 @@
+package study.querydsl.repository;
+
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+import com.querydsl.core.types.EntityPath;
+import com.querydsl.core.types.Predicate;
+import com.querydsl.core.types.dsl.NumberPath;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import com.querydsl.jpa.impl.JPAUpdateClause;
+import java.util.List;
+import java.util.function.Consumer;
+import javax.persistence.EntityManager;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.repository.MemberChangeEvent.Kind;
+import study.querydsl.repository.MemberChangeEvent.Target;
+
+/**
+ * 엔티티 리스너를 거치지 않는 Querydsl 벌크 update/delete 를 MemberChangeFeed 에 기록하는 래퍼.
+ * 대상 id 를 먼저 읽어 id 조건까지 걸고 실행하므로, 기록된 ids 와 실제로 바뀐 행이 일치한다.
+ * 대상이 MAX_TRACKED_IDS 를 넘으면 where 만으로 실행하고 ids 없이 조건만 기록한다.
+ * update 는 @Version 도 1 올린다. 실행 후 영속성 컨텍스트를 비운다(clearAutomatically 와 같다).
+ * team_stat 은 TeamStatReconciler 가 맞춘다.
+ */
+@Repository
+public class MemberBulkRepository {
+
+    static final int MAX_TRACKED_IDS = 1000;
+
+    private final EntityManager em;
+    private final JPAQueryFactory queryFactory;
+    private final MemberChangeFeed changeFeed;
+
+    public MemberBulkRepository(EntityManager em, JPAQueryFactory queryFactory, MemberChangeFeed changeFeed) {
+        this.em = em;
+        this.queryFactory = queryFactory;
+        this.changeFeed = changeFeed;
+    }
+
+    @Transactional
+    public long updateMembers(Predicate where, Consumer<JPAUpdateClause> assignments) {
+        return update(member, member.id, member.version, Target.MEMBER, where, assignments);
+    }
+
+    @Transactional
+    public long deleteMembers(Predicate where) {
+        return delete(member, member.id, Target.MEMBER, where);
+    }
+
+    @Transactional
+    public long updateTeams(Predicate where, Consumer<JPAUpdateClause> assignments) {
+        return update(team, team.id, team.version, Target.TEAM, where, assignments);
+    }
+
+    @Transactional
+    public long deleteTeams(Predicate where) {
+        return delete(team, team.id, Target.TEAM, where);
+    }
+
+    private long update(EntityPath<?> entity, NumberPath<Long> id, NumberPath<Long> version, Target target,
+            Predicate where, Consumer<JPAUpdateClause> assignments) {
+        List<Long> ids = affectedIds(entity, id, where);
+        if (ids != null && ids.isEmpty()) {
+            return 0;
+        }
+        JPAUpdateClause clause = queryFactory.update(entity).where(ids == null ? null : id.in(ids), where);
+        assignments.accept(clause);
+        // 벌크 update 도 버전을 올려야 동시에 엔티티를 고치던 쪽이 충돌을 알 수 있다
+        clause.set(version, version.add(1L));
+        long count = clause.execute();
+        em.clear();
+        changeFeed.record(target, Kind.BULK_UPDATED, ids, condition(where));
+        return count;
+    }
+
+    private long delete(EntityPath<?> entity, NumberPath<Long> id, Target target, Predicate where) {
+        List<Long> ids = affectedIds(entity, id, where);
+        if (ids != null && ids.isEmpty()) {
+            return 0;
+        }
+        long count = queryFactory.delete(entity).where(ids == null ? null : id.in(ids), where).execute();
+        em.clear();
+        changeFeed.record(target, Kind.BULK_DELETED, ids, condition(where));
+        return count;
+    }
+
+    // 대상이 너무 많으면 null
+    private List<Long> affectedIds(EntityPath<?> entity, NumberPath<Long> id, Predicate where) {
+        List<Long> ids = queryFactory
+                .select(id)
+                .from(entity)
+                .where(where)
+                .orderBy(id.asc())
+                .limit(MAX_TRACKED_IDS + 1)
+                .fetch();
+        return ids.size() > MAX_TRACKED_IDS ? null : ids;
+    }
+
+    private static String condition(Predicate where) {
+        return where == null ? null : where.toString();
+    }
+}
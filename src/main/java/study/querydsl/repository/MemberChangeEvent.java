@@ -0,0 +1,44 @@
+package study.querydsl.repository;
+
+import java.util.List;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * 커밋된 Member/Team 변경 한 건. sequence 는 커밋 순서대로 1 부터 증가한다.
+ * 벌크 연산에서 대상이 너무 많으면 ids 가 null 이고, condition 에 맞는 전체가 바뀐 것으로 본다.
+ */
+@Getter
+@ToString
+public class MemberChangeEvent {
+
+    public enum Target {
+        MEMBER, TEAM
+    }
+
+    public enum Kind {
+        SAVED, REMOVED, BULK_UPDATED, BULK_DELETED
+    }
+
+    private final long sequence;
+    private final Target target;
+    private final Kind kind;
+    private final List<Long> ids;
+    private final String condition;
+
+    MemberChangeEvent(long sequence, Target target, Kind kind, List<Long> ids, String condition) {
+        this.sequence = sequence;
+        this.target = target;
+        this.kind = kind;
+        this.ids = ids;
+        this.condition = condition;
+    }
+
+    public boolean isBulk() {
+        return kind == Kind.BULK_UPDATED || kind == Kind.BULK_DELETED;
+    }
+
+    public boolean isIdsKnown() {
+        return ids != null;
+    }
+}
@@ -0,0 +1,74 @@
+package study.querydsl.repository;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+import study.querydsl.repository.MemberChangeEvent.Kind;
+import study.querydsl.repository.MemberChangeEvent.Target;
+
+/**
+ * Member/Team 변경 피드(인프로세스 outbox).
+ * 엔티티 리스너와 MemberBulkRepository 가 변경을 기록하면 커밋 후에 MemberChangeSubscriber 빈들에게 전달한다.
+ * 롤백된 변경은 전달되지 않는다. 최근 이벤트는 since() 로 다시 읽을 수 있다.
+ */
+@Slf4j
+@Component
+public class MemberChangeFeed {
+
+    private static final int RECENT_SIZE = 1024;
+
+    private final ObjectProvider<MemberChangeSubscriber> subscribers;
+    private final Deque<MemberChangeEvent> recent = new ArrayDeque<>(RECENT_SIZE);
+    private long sequence;
+
+    public MemberChangeFeed(ObjectProvider<MemberChangeSubscriber> subscribers) {
+        this.subscribers = subscribers;
+    }
+
+    public void record(Target target, Kind kind, List<Long> ids, String condition) {
+        List<Long> copy = ids == null ? null : List.copyOf(ids);
+        IndexSync.afterCommit(() -> publish(target, kind, copy, condition));
+    }
+
+    /**
+     * sequence 보다 뒤의 이벤트를 순서대로 돌려준다.
+     * 첫 이벤트의 sequence 가 sequence + 1 보다 크면 그 사이는 이미 밀려났으므로 전체를 다시 읽어야 한다.
+     */
+    public synchronized List<MemberChangeEvent> since(long sequence) {
+        List<MemberChangeEvent> result = new ArrayList<>();
+        for (MemberChangeEvent event : recent) {
+            if (event.getSequence() > sequence) {
+                result.add(event);
+            }
+        }
+        return result;
+    }
+
+    public synchronized long lastSequence() {
+        return sequence;
+    }
+
+    private void publish(Target target, Kind kind, List<Long> ids, String condition) {
+        MemberChangeEvent event;
+        synchronized (this) {
+            event = new MemberChangeEvent(++sequence, target, kind, ids, condition);
+            if (recent.size() == RECENT_SIZE) {
+                recent.removeFirst();
+            }
+            recent.addLast(event);
+        }
+        subscribers.orderedStream().forEach(subscriber -> {
+            // 구독자 하나의 실패가 다른 구독자나 이미 끝난 커밋에 영향을 주지 않게 한다
+            try {
+                subscriber.onChange(event);
+            } catch (RuntimeException e) {
+                log.warn("member change subscriber failed. subscriber={}, event={}",
+                        subscriber.getClass().getSimpleName(), event, e);
+            }
+        });
+    }
+}
@@ -0,0 +1,10 @@
+package study.querydsl.repository;
+
+/**
+ * MemberChangeFeed 의 구독자. 빈으로 등록하면 커밋된 변경을 커밋 순서대로 받는다.
+ * 커밋한 스레드에서 호출되므로 오래 걸리는 일은 하지 않는다.
+ */
+public interface MemberChangeSubscriber {
+
+    void onChange(MemberChangeEvent event);
+}
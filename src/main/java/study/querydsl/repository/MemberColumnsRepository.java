@@ -0,0 +1,130 @@
+package study.querydsl.repository;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.util.StringUtils;
+import study.querydsl.dto.MemberSearchCond;
+import study.querydsl.dto.MemberTeamColumns;
+
+/**
+ * MemberRepositoryCustom.search 와 같은 조건을 JDBC 로 실행해 ResultSet 에서 바로 MemberTeamColumns 를 채운다.
+ * 대량 응답에서 Tuple/DTO/boxing 할당을 없애기 위한 경로다.
+ */
+@Repository
+@RequiredArgsConstructor
+public class MemberColumnsRepository {
+
+    private static final String SELECT = "select m.member_id, m.username, m.age, t.id, t.name"
+            + " from member m left join team t on m.team_id = t.id";
+    private static final String COUNT = "select count(*) from member m left join team t on m.team_id = t.id";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final UsernameIndex usernameIndex;
+
+    public MemberTeamColumns search(MemberSearchCond cond) {
+        MapSqlParameterSource params = new MapSqlParameterSource();
+        String sql = SELECT + where(cond, params);
+
+        return jdbcTemplate.query(sql, params, rs -> {
+            MemberTeamColumns.Builder builder = MemberTeamColumns.builder(256);
+            while (rs.next()) {
+                long memberId = rs.getLong(1);
+                String username = rs.getString(2);
+                int age = rs.getInt(3);
+                long teamId = rs.getLong(4);
+                if (rs.wasNull()) {
+                    builder.addWithoutTeam(memberId, username, age);
+                } else {
+                    builder.add(memberId, username, age, teamId, rs.getString(5));
+                }
+            }
+            return builder.build();
+        });
+    }
+
+    /**
+     * 한 페이지를 읽으면서 row 마다 handler 를 호출한다. 결과를 모아두지 않으므로 읽는 즉시 응답에 쓸 수 있다.
+     * @return 읽은 row 수
+     */
+    public int streamPage(MemberSearchCond cond, Pageable pageable, MemberRowHandler handler) {
+        MapSqlParameterSource params = new MapSqlParameterSource();
+        String sql = SELECT + where(cond, params) + " order by m.member_id";
+        if (pageable.isPaged()) {
+            sql += " limit :limit offset :offset";
+            params.addValue("limit", pageable.getPageSize());
+            params.addValue("offset", pageable.getOffset());
+        }
+
+        int[] rows = new int[1];
+        jdbcTemplate.query(sql, params, rs -> {
+            long teamId = rs.getLong(4);
+            boolean hasTeam = !rs.wasNull();
+            try {
+                handler.row(rs.getLong(1), rs.getString(2), rs.getInt(3), hasTeam, teamId, rs.getString(5));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            rows[0]++;
+        });
+        return rows[0];
+    }
+
+    public long count(MemberSearchCond cond) {
+        MapSqlParameterSource params = new MapSqlParameterSource();
+        Long count = jdbcTemplate.queryForObject(COUNT + where(cond, params), params, Long.class);
+        return count == null ? 0 : count;
+    }
+
+    private String where(MemberSearchCond cond, MapSqlParameterSource params) {
+        List<String> where = new ArrayList<>();
+        if (StringUtils.hasText(cond.getUsername())) {
+            where.add("m.username = :username");
+            params.addValue("username", cond.getUsername());
+        }
+        if (StringUtils.hasText(cond.getUsernameContains())) {
+            where.add(usernameContains(cond.getUsernameContains(), params));
+        }
+        if (StringUtils.hasText(cond.getTeamName())) {
+            where.add("t.name = :teamName");
+            params.addValue("teamName", cond.getTeamName());
+        }
+        if (cond.getAgeGoe() != null) {
+            where.add("m.age >= :ageGoe");
+            params.addValue("ageGoe", cond.getAgeGoe());
+        }
+        if (cond.getAgeLoe() != null) {
+            where.add("m.age <= :ageLoe");
+            params.addValue("ageLoe", cond.getAgeLoe());
+        }
+        return where.isEmpty() ? "" : " where " + String.join(" and ", where);
+    }
+
+    // 역색인으로 id 를 찾고 in (...) 으로 조회한다. 색인을 못 쓰면 like '%x%'
+    private String usernameContains(String term, MapSqlParameterSource params) {
+        List<Long> ids = usernameIndex.findIdsContaining(term);
+        if (ids == null) {
+            String escaped = term.toLowerCase(Locale.ROOT)
+                    .replace("!", "!!").replace("%", "!%").replace("_", "!_");
+            params.addValue("usernameContains", "%" + escaped + "%");
+            return "lower(m.username) like :usernameContains escape '!'";
+        }
+        if (ids.isEmpty()) {
+            return "1 = 0";
+        }
+        params.addValue("memberIds", ids);
+        return "m.member_id in (:memberIds)";
+    }
+
+    public interface MemberRowHandler {
+        void row(long memberId, String username, int age, boolean hasTeam, long teamId, String teamName)
+                throws IOException;
+    }
+}
@@ -0,0 +1,154 @@
+package study.querydsl.repository;
+
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.jpa.impl.JPAQuery;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.support.PageableExecutionUtils;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.StringUtils;
+import study.querydsl.dto.MemberSearchCond;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.QMember;
+import study.querydsl.entity.Team;
+
+/**
+ * 호출자가 함께 읽을 연관관계(team, team.members)를 지정하는 Member 엔티티 조회.
+ * ToOne 인 team 은 fetch join 한다. 행 수가 늘지 않아 페이징해도 안전하다.
+ * 컬렉션인 team.members 는 본 쿼리에 fetch join 하지 않는다. 페이징이 메모리에서 일어나기 때문이다(HHH000104).
+ * 대신 읽은 team id 로 in 쿼리를 한 번 더 실행해 컬렉션을 채운다. team 이 많으면 BATCH_SIZE 씩 나눠 실행한다.
+ */
+@Repository
+@RequiredArgsConstructor
+public class MemberGraphRepository {
+
+    static final int BATCH_SIZE = 500;
+
+    public enum Association {
+        TEAM("team"), TEAM_MEMBERS("team.members");
+
+        private final String path;
+
+        Association(String path) {
+            this.path = path;
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        public static Association fromPath(String path) {
+            return Arrays.stream(values())
+                    .filter(association -> association.path.equals(path))
+                    .findFirst()
+                    .orElseThrow(() -> new IllegalArgumentException("unknown association: " + path));
+        }
+    }
+
+    private final JPAQueryFactory queryFactory;
+    private final UsernameIndex usernameIndex;
+
+    @Transactional(readOnly = true)
+    public List<Member> findAll(MemberSearchCond cond, Association... associations) {
+        Set<Association> fetch = toSet(associations);
+        List<Member> content = selectMembers(cond, fetch).fetch();
+        loadTeamMembers(content, fetch);
+        return content;
+    }
+
+    @Transactional(readOnly = true)
+    public Page<Member> findPage(MemberSearchCond cond, Pageable pageable, Association... associations) {
+        Set<Association> fetch = toSet(associations);
+        List<Member> content = selectMembers(cond, fetch)
+                .offset(pageable.getOffset())
+                .limit(pageable.getPageSize())
+                .fetch();
+        loadTeamMembers(content, fetch);
+
+        JPAQuery<Long> countQuery = queryFactory
+                .select(member.count())
+                .from(member)
+                .leftJoin(member.team, team)
+                .where(where(cond));
+        return PageableExecutionUtils.getPage(content, pageable, countQuery::fetchOne);
+    }
+
+    private JPAQuery<Member> selectMembers(MemberSearchCond cond, Set<Association> fetch) {
+        JPAQuery<Member> query = queryFactory.selectFrom(member).leftJoin(member.team, team);
+        if (fetch.contains(Association.TEAM)) {
+            query.fetchJoin();
+        }
+        return query.where(where(cond)).orderBy(member.id.asc());
+    }
+
+    // 이미 영속성 컨텍스트에 있는 team 의 members 컬렉션을 컬렉션 fetch join 으로 초기화한다
+    private void loadTeamMembers(List<Member> members, Set<Association> fetch) {
+        if (!fetch.contains(Association.TEAM_MEMBERS)) {
+            return;
+        }
+        Set<Long> teamIds = new LinkedHashSet<>();
+        for (Member m : members) {
+            Team t = m.getTeam();
+            if (t != null) {
+                teamIds.add(t.getId());
+            }
+        }
+        List<Long> ids = new ArrayList<>(teamIds);
+        QMember teamMember = new QMember("teamMember");
+        for (int from = 0; from < ids.size(); from += BATCH_SIZE) {
+            queryFactory
+                    .selectFrom(team)
+                    .distinct()
+                    .leftJoin(team.members, teamMember).fetchJoin()
+                    .where(team.id.in(ids.subList(from, Math.min(ids.size(), from + BATCH_SIZE))))
+                    .fetch();
+        }
+    }
+
+    private static Set<Association> toSet(Association... associations) {
+        Set<Association> fetch = EnumSet.noneOf(Association.class);
+        fetch.addAll(Arrays.asList(associations));
+        // team.members 를 채우려면 team 이 있어야 하므로 함께 읽는다
+        if (fetch.contains(Association.TEAM_MEMBERS)) {
+            fetch.add(Association.TEAM);
+        }
+        return fetch;
+    }
+
+    private BooleanExpression[] where(MemberSearchCond cond) {
+        return new BooleanExpression[]{
+                usernameEq(cond.getUsername()),
+                usernameIndex.usernameContains(cond.getUsernameContains()),
+                teamNameEq(cond.getTeamName()),
+                ageGoe(cond.getAgeGoe()),
+                ageLoe(cond.getAgeLoe())};
+    }
+
+    private BooleanExpression usernameEq(String username) {
+        return StringUtils.hasText(username) ? member.username.eq(username) : null;
+    }
+
+    private BooleanExpression teamNameEq(String teamName) {
+        return StringUtils.hasText(teamName) ? team.name.eq(teamName) : null;
+    }
+
+    private BooleanExpression ageGoe(Integer ageGoe) {
+        return ageGoe != null ? member.age.goe(ageGoe) : null;
+    }
+
+    private BooleanExpression ageLoe(Integer ageLoe) {
+        return ageLoe != null ? member.age.loe(ageLoe) : null;
+    }
+}
@@ -0,0 +1,64 @@
+package study.querydsl.repository;
+
+import java.util.List;
+import javax.persistence.PostPersist;
+import javax.persistence.PostRemove;
+import javax.persistence.PostUpdate;
+import org.springframework.beans.factory.ObjectProvider;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.repository.MemberChangeEvent.Kind;
+import study.querydsl.repository.MemberChangeEvent.Target;
+
+/**
+ * Member/Team 변경을 인메모리 인덱스(MemberSearchIndex, UsernameIndex)와 MemberChangeFeed 에 전달하는 JPA 엔티티 리스너.
+ * 하이버네이트가 SpringBeanContainer 로 생성하므로 생성자 주입을 받는다.
+ * 인덱스는 EntityManagerFactory 보다 늦게 만들어지므로 ObjectProvider 로 지연 조회한다.
+ */
+public class MemberIndexListener {
+
+    private final ObjectProvider<MemberSearchIndex> memberSearchIndex;
+    private final ObjectProvider<UsernameIndex> usernameIndex;
+    private final ObjectProvider<MemberChangeFeed> changeFeed;
+
+    public MemberIndexListener(ObjectProvider<MemberSearchIndex> memberSearchIndex,
+            ObjectProvider<UsernameIndex> usernameIndex, ObjectProvider<MemberChangeFeed> changeFeed) {
+        this.memberSearchIndex = memberSearchIndex;
+        this.usernameIndex = usernameIndex;
+        this.changeFeed = changeFeed;
+    }
+
+    @PostPersist
+    @PostUpdate
+    public void saved(Object entity) {
+        if (entity instanceof Member) {
+            Member member = (Member) entity;
+            memberSearchIndex.ifAvailable(index -> index.memberSaved(member.getId(), member.getUsername(),
+                    member.getAge(), TeamStatEventListener.teamId(member.getTeam())));
+            usernameIndex.ifAvailable(index -> index.memberSaved(member.getId(), member.getUsername()));
+            record(Target.MEMBER, Kind.SAVED, member.getId());
+        } else if (entity instanceof Team) {
+            Team team = (Team) entity;
+            memberSearchIndex.ifAvailable(index -> index.teamSaved(team.getId(), team.getName()));
+            record(Target.TEAM, Kind.SAVED, team.getId());
+        }
+    }
+
+    @PostRemove
+    public void removed(Object entity) {
+        if (entity instanceof Member) {
+            Long id = ((Member) entity).getId();
+            memberSearchIndex.ifAvailable(index -> index.memberRemoved(id));
+            usernameIndex.ifAvailable(index -> index.memberRemoved(id));
+            record(Target.MEMBER, Kind.REMOVED, id);
+        } else if (entity instanceof Team) {
+            Long id = ((Team) entity).getId();
+            memberSearchIndex.ifAvailable(index -> index.teamRemoved(id));
+            record(Target.TEAM, Kind.REMOVED, id);
+        }
+    }
+
+    private void record(Target target, Kind kind, Long id) {
+        changeFeed.ifAvailable(feed -> feed.record(target, kind, List.of(id), null));
+    }
+}
@@ -6,10 +6,19 @@ import static study.querydsl.entity.QTeam.team;
 import com.querydsl.core.BooleanBuilder;
 import com.querydsl.core.types.dsl.BooleanExpression;
 import com.querydsl.jpa.impl.JPAQueryFactory;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import javax.persistence.EntityManager;
-import lombok.RequiredArgsConstructor;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.engine.spi.Status;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Repository;
 import org.springframework.util.StringUtils;
 import study.querydsl.dto.MemberSearchCond;
@@ -18,11 +27,26 @@ import study.querydsl.dto.QMemberTeamDto;
 import study.querydsl.entity.Member;
 
 @Repository
-@RequiredArgsConstructor
 public class MemberJpaRepository {
 
     private final EntityManager em;
     private final JPAQueryFactory queryFactory;
+    private final UsernameIndex usernameIndex;
+    private final MemberSearchMetrics searchMetrics;
+    private final int maxInSize;
+
+    public MemberJpaRepository(EntityManager em, JPAQueryFactory queryFactory, UsernameIndex usernameIndex,
+            MemberSearchMetrics searchMetrics, @Value("${member.multi-get.max-in-size:512}") int maxInSize) {
+        this.em = em;
+        this.queryFactory = queryFactory;
+        this.usernameIndex = usernameIndex;
+        this.searchMetrics = searchMetrics;
+        // 0 이하면 chunks 가 끝나지 않는다
+        if (maxInSize <= 0) {
+            throw new IllegalArgumentException("member.multi-get.max-in-size must be positive: " + maxInSize);
+        }
+        this.maxInSize = maxInSize;
+    }
 
     public void save(Member member) {
         em.persist(member);
@@ -32,6 +56,95 @@ public class MemberJpaRepository {
         return Optional.ofNullable(em.find(Member.class, id));
     }
 
+    /**
+     * id 목록으로 한꺼번에 조회한다. 결과는 ids 순서이고 없는 id 는 빠진다. 같은 id 가 여러 번 오면 그만큼 반복된다.
+     * 영속성 컨텍스트에 이미 있는 엔티티는 쿼리하지 않고, 나머지는 maxInSize 씩 in (...) 으로 읽는다.
+     */
+    public List<Member> findAllByIds(Collection<Long> ids) {
+        Map<Long, Member> found = new HashMap<>();
+        List<Long> missing = new ArrayList<>();
+        SessionImplementor session = em.unwrap(SessionImplementor.class);
+        EntityPersister persister = session.getFactory().getMetamodel().entityPersister(Member.class);
+        for (Long id : new LinkedHashSet<>(ids)) {
+            if (id == null) {
+                continue;
+            }
+            Object managed = session.getPersistenceContextInternal().getEntity(session.generateEntityKey(id, persister));
+            if (managed == null) {
+                missing.add(id);
+            } else if (session.getPersistenceContextInternal().getEntry(managed).getStatus() != Status.DELETED) {
+                found.put(id, (Member) managed);
+            }
+        }
+        for (List<Long> chunk : chunks(missing, maxInSize)) {
+            for (Member m : queryFactory.selectFrom(member).where(member.id.in(chunk)).fetch()) {
+                found.put(m.getId(), m);
+            }
+        }
+        return inOrder(ids, found);
+    }
+
+    // DTO 프로젝션은 영속성 컨텍스트를 거치지 않으므로 항상 DB 에서 읽는다. 아직 flush 안 된 변경은 안 보인다
+    public List<MemberTeamDto> findAllDtoByIds(Collection<Long> ids) {
+        Map<Long, MemberTeamDto> found = new HashMap<>();
+        List<Long> distinct = new ArrayList<>();
+        for (Long id : new LinkedHashSet<>(ids)) {
+            if (id != null) {
+                distinct.add(id);
+            }
+        }
+        for (List<Long> chunk : chunks(distinct, maxInSize)) {
+            List<MemberTeamDto> rows = queryFactory
+                    .select(new QMemberTeamDto(
+                            member.id.as("memberId"),
+                            member.username,
+                            member.age,
+                            team.id.as("teamId"),
+                            team.name.as("teamName")))
+                    .from(member)
+                    .leftJoin(member.team, team)
+                    .where(member.id.in(chunk))
+                    .fetch();
+            for (MemberTeamDto row : rows) {
+                found.put(row.getMemberId(), row);
+            }
+        }
+        return inOrder(ids, found);
+    }
+
+    /**
+     * maxInSize 씩 자르고, 각 묶음은 2의 거듭제곱 크기가 되도록 마지막 id 를 반복해 채운다.
+     * in 절 파라미터 수가 몇 가지로만 나와서 하이버네이트 쿼리 플랜 캐시와 DB 문장 캐시를 재사용한다.
+     */
+    static List<List<Long>> chunks(List<Long> ids, int maxInSize) {
+        List<List<Long>> result = new ArrayList<>();
+        for (int from = 0; from < ids.size(); from += maxInSize) {
+            List<Long> chunk = new ArrayList<>(ids.subList(from, Math.min(from + maxInSize, ids.size())));
+            Long last = chunk.get(chunk.size() - 1);
+            for (int i = chunk.size(), padded = paddedSize(chunk.size(), maxInSize); i < padded; i++) {
+                chunk.add(last);
+            }
+            result.add(chunk);
+        }
+        return result;
+    }
+
+    static int paddedSize(int size, int max) {
+        int pow = Integer.highestOneBit(Math.max(size, 1));
+        return Math.min(pow == size ? size : pow << 1, max);
+    }
+
+    private static <T> List<T> inOrder(Collection<Long> ids, Map<Long, T> found) {
+        List<T> result = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            T value = id == null ? null : found.get(id);
+            if (value != null) {
+                result.add(value);
+            }
+        }
+        return result;
+    }
+
     public List<Member> findAll() {
         return em.createQuery("select m from Member m", Member.class).getResultList();
     }
@@ -79,7 +192,8 @@ public class MemberJpaRepository {
     }
 
     public List<MemberTeamDto> search(MemberSearchCond cond) {
-        return queryFactory
+        long start = System.nanoTime();
+        List<MemberTeamDto> result = queryFactory
                 .select(new QMemberTeamDto(
                         member.id.as("memberId"),
                         member.username,
@@ -89,10 +203,13 @@ public class MemberJpaRepository {
                 .from(member)
                 .leftJoin(member.team, team)
                 .where(usernameEq(cond.getUsername()),
+                        usernameIndex.usernameContains(cond.getUsernameContains()),
                         teamNameEq(cond.getTeamName()),
                         ageGoe(cond.getAgeGoe()),
                         ageLoe(cond.getAgeLoe()))
                 .fetch();
+        searchMetrics.record(MemberSearchMetrics.JPA_SEARCH, cond, Pageable.unpaged(), start, result.size());
+        return result;
     }
     public List<MemberTeamDto> searchCombination(MemberSearchCond cond) {
         return queryFactory
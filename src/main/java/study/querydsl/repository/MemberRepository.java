@@ -1,13 +1,42 @@
 package study.querydsl.repository;
 
+import java.util.Iterator;
 import java.util.List;
+import java.util.Optional;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.querydsl.QuerydslPredicateExecutor;
+import org.springframework.data.querydsl.binding.QuerydslBinderCustomizer;
+import org.springframework.data.querydsl.binding.QuerydslBindings;
 import study.querydsl.entity.Member;
+import study.querydsl.entity.QMember;
 
 public interface MemberRepository extends JpaRepository<Member, Long>, MemberRepositoryCustom,
-        QuerydslPredicateExecutor {
+        QuerydslPredicateExecutor<Member>, QuerydslBinderCustomizer<QMember> {
 
     List<Member> findByUsername(String username);
 
+    /**
+     * /members/query 에서 바인딩할 수 있는 경로. 인덱스가 있는 컬럼만 열어둔다.
+     * username 은 eq, 끝이 * 이면 prefix like. age 는 값 하나면 eq, 두 개면 between. team.name 은 eq.
+     */
+    @Override
+    default void customize(QuerydslBindings bindings, QMember member) {
+        bindings.excludeUnlistedProperties(true);
+        bindings.including(member.username, member.age, member.team.name);
+
+        bindings.bind(member.username).first((path, value) -> value.endsWith("*")
+                ? path.startsWith(value.substring(0, value.length() - 1))
+                : path.eq(value));
+        bindings.bind(member.age).all((path, values) -> {
+            Iterator<? extends Integer> it = values.iterator();
+            Integer first = it.next();
+            if (!it.hasNext()) {
+                return Optional.of(path.eq(first));
+            }
+            Integer second = it.next();
+            return Optional.of(path.between(Math.min(first, second), Math.max(first, second)));
+        });
+        bindings.bind(member.team.name).first((path, value) -> path.eq(value));
+    }
+
 }
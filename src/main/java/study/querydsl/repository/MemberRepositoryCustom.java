@@ -1,16 +1,26 @@
 package study.querydsl.repository;
 
+import com.querydsl.core.types.Predicate;
 import java.util.List;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import study.querydsl.dto.CountStrategy;
+import study.querydsl.dto.MemberCountedPage;
 import study.querydsl.dto.MemberSearchCond;
 import study.querydsl.dto.MemberTeamDto;
 
 public interface MemberRepositoryCustom {
 
     List<MemberTeamDto> search(MemberSearchCond cond);
+    /**
+     * search 와 같은 DB 쿼리를 최대 limit 건만 실행한다. 메모리 색인과 검색 메트릭을 거치지 않는다(워밍업용).
+     */
+    List<MemberTeamDto> searchFromDb(MemberSearchCond cond, long limit);
+    List<List<MemberTeamDto>> searchBatch(List<MemberSearchCond> conds);
     Page<MemberTeamDto> searchPageSimple(MemberSearchCond cond, Pageable pageable);
     Page<MemberTeamDto> searchPageComplex(MemberSearchCond cond, Pageable pageable);
+    Page<MemberTeamDto> searchByPredicate(Predicate predicate, Pageable pageable);
+    MemberCountedPage searchPageCounted(MemberSearchCond cond, Pageable pageable, CountStrategy strategy);
 
 
 }
@@ -2,19 +2,33 @@ package study.querydsl.repository;
 
 import static study.querydsl.entity.QMember.member;
 import static study.querydsl.entity.QTeam.team;
+import static study.querydsl.entity.QTeamStat.teamStat;
 
+import com.querydsl.core.BooleanBuilder;
 import com.querydsl.core.QueryResults;
+import com.querydsl.core.Tuple;
+import com.querydsl.core.types.Predicate;
 import com.querydsl.core.types.dsl.BooleanExpression;
 import com.querydsl.jpa.impl.JPAQuery;
 import com.querydsl.jpa.impl.JPAQueryFactory;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
 import javax.persistence.EntityManager;
+import javax.persistence.Query;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.support.QuerydslRepositorySupport;
 import org.springframework.data.support.PageableExecutionUtils;
 import org.springframework.util.StringUtils;
+import study.querydsl.dto.CountStrategy;
+import study.querydsl.dto.MemberCountedPage;
 import study.querydsl.dto.MemberSearchCond;
 import study.querydsl.dto.MemberTeamDto;
 import study.querydsl.dto.QMemberTeamDto;
@@ -22,15 +36,48 @@ import study.querydsl.entity.Member;
 
 public class MemberRepositoryImpl implements MemberRepositoryCustom {
 
+    private final EntityManager em;
     private final JPAQueryFactory queryFactory;
+    private final MemberSearchIndex memberSearchIndex;
+    private final UsernameIndex usernameIndex;
+    private final MemberSearchMetrics searchMetrics;
+    private final CountStrategy defaultCountStrategy;
+    private final int countCap;
 
-    public MemberRepositoryImpl(EntityManager em) {
+    public MemberRepositoryImpl(EntityManager em, MemberSearchIndex memberSearchIndex, UsernameIndex usernameIndex,
+            MemberSearchMetrics searchMetrics,
+            @Value("${member.search.count.strategy:exact}") String defaultCountStrategy,
+            @Value("${member.search.count.cap:10000}") int countCap) {
+        this.em = em;
         this.queryFactory = new JPAQueryFactory(em);
+        this.memberSearchIndex = memberSearchIndex;
+        this.usernameIndex = usernameIndex;
+        this.searchMetrics = searchMetrics;
+        this.defaultCountStrategy = CountStrategy.parse(defaultCountStrategy);
+        this.countCap = countCap;
     }
 
     @Override
     public List<MemberTeamDto> search(MemberSearchCond cond) {
+        long start = System.nanoTime();
+        if (canUseIndex()) {
+            List<MemberTeamDto> result = memberSearchIndex.search(cond);
+            searchMetrics.record(MemberSearchMetrics.SEARCH_INDEX, cond, Pageable.unpaged(), start, result.size());
+            return result;
+        }
 
+        List<MemberTeamDto> result = searchQuery(cond).fetch();
+        searchMetrics.record(MemberSearchMetrics.SEARCH, cond, Pageable.unpaged(), start, result.size());
+        return result;
+    }
+
+    // limit 는 SQL 에만 붙고 HQL 은 search 와 같으므로 같은 쿼리 플랜을 쓴다
+    @Override
+    public List<MemberTeamDto> searchFromDb(MemberSearchCond cond, long limit) {
+        return searchQuery(cond).limit(limit).fetch();
+    }
+
+    private JPAQuery<MemberTeamDto> searchQuery(MemberSearchCond cond) {
         return queryFactory
                 .select(new QMemberTeamDto(
                         member.id.as("memberId"),
@@ -41,14 +88,15 @@ public class MemberRepositoryImpl implements MemberRepositoryCustom {
                 .from(member)
                 .leftJoin(member.team, team)
                 .where(usernameEq(cond.getUsername()),
+                        usernameIndex.usernameContains(cond.getUsernameContains()),
                         teamNameEq(cond.getTeamName()),
                         ageGoe(cond.getAgeGoe()),
-                        ageLoe(cond.getAgeLoe()))
-                .fetch();
+                        ageLoe(cond.getAgeLoe()));
     }
 
     @Override
     public Page<MemberTeamDto> searchPageSimple(MemberSearchCond cond, Pageable pageable) {
+        long start = System.nanoTime();
         QueryResults<MemberTeamDto> result = queryFactory
                 .select(new QMemberTeamDto(
                         member.id.as("memberId"),
@@ -59,20 +107,24 @@ public class MemberRepositoryImpl implements MemberRepositoryCustom {
                 .from(member)
                 .leftJoin(member.team, team)
                 .where(usernameEq(cond.getUsername()),
+                        usernameIndex.usernameContains(cond.getUsernameContains()),
                         teamNameEq(cond.getTeamName()),
                         ageGoe(cond.getAgeGoe()),
                         ageLoe(cond.getAgeLoe()))
+                .orderBy(MemberSort.orderBy(pageable.getSort()))
                 .offset(pageable.getOffset())
                 .limit(pageable.getPageSize())
                 .fetchResults();
 
         List<MemberTeamDto> content = result.getResults();
         long total = result.getTotal();
+        searchMetrics.record(MemberSearchMetrics.SEARCH_PAGE_SIMPLE, cond, pageable, start, content.size());
         return new PageImpl<>(content, pageable, total);
     }
 
     @Override
     public Page<MemberTeamDto> searchPageComplex(MemberSearchCond cond, Pageable pageable) {
+        long start = System.nanoTime();
         List<MemberTeamDto> content = queryFactory
                 .select(new QMemberTeamDto(
                         member.id.as("memberId"),
@@ -83,9 +135,11 @@ public class MemberRepositoryImpl implements MemberRepositoryCustom {
                 .from(member)
                 .leftJoin(member.team, team)
                 .where(usernameEq(cond.getUsername()),
+                        usernameIndex.usernameContains(cond.getUsernameContains()),
                         teamNameEq(cond.getTeamName()),
                         ageGoe(cond.getAgeGoe()),
                         ageLoe(cond.getAgeLoe()))
+                .orderBy(MemberSort.orderBy(pageable.getSort()))
                 .offset(pageable.getOffset())
                 .limit(pageable.getPageSize())
                 .fetch();
@@ -94,14 +148,294 @@ public class MemberRepositoryImpl implements MemberRepositoryCustom {
                 .selectFrom(member)
                 .leftJoin(member.team, team)
                 .where(usernameEq(cond.getUsername()),
+                        usernameIndex.usernameContains(cond.getUsernameContains()),
                         teamNameEq(cond.getTeamName()),
                         ageGoe(cond.getAgeGoe()),
                         ageLoe(cond.getAgeLoe()));
 
-        return PageableExecutionUtils.getPage(content, pageable, countQuery::fetchCount);
+        Page<MemberTeamDto> page = PageableExecutionUtils.getPage(content, pageable, countQuery::fetchCount);
+        searchMetrics.record(MemberSearchMetrics.SEARCH_PAGE_COMPLEX, cond, pageable, start, content.size());
+        return page;
 //        return new PageImpl<>(content, pageable, count);
     }
 
+    // QuerydslBindings 로 만든 predicate 는 member 기준 경로(member.team.name)라 그대로 where 에 넣는다
+    @Override
+    public Page<MemberTeamDto> searchByPredicate(Predicate predicate, Pageable pageable) {
+        List<MemberTeamDto> content = queryFactory
+                .select(new QMemberTeamDto(
+                        member.id.as("memberId"),
+                        member.username,
+                        member.age,
+                        team.id.as("teamId"),
+                        team.name.as("teamName")))
+                .from(member)
+                .leftJoin(member.team, team)
+                .where(predicate)
+                .orderBy(MemberSort.orderBy(pageable.getSort()))
+                .offset(pageable.getOffset())
+                .limit(pageable.getPageSize())
+                .fetch();
+
+        JPAQuery<Long> countQuery = queryFactory
+                .select(member.count())
+                .from(member)
+                .where(predicate);
+
+        return PageableExecutionUtils.getPage(content, pageable, countQuery::fetchOne);
+    }
+
+    /**
+     * 여러 조건을 한 번의 쿼리로 조회해 조건별 결과로 나눠준다. 결과 순서는 conds 순서, 각 결과는 member id 순이다.
+     * teamName 만 있는 조건들은 team.name in (...) 하나로, 나머지는 조건별 and 묶음을 or 로 합친다.
+     * 한 row 가 여러 조건에 맞을 수 있으므로 discriminator 대신 읽은 row 를 조건마다 다시 검사해서 나눈다.
+     */
+    @Override
+    public List<List<MemberTeamDto>> searchBatch(List<MemberSearchCond> conds) {
+        if (conds.isEmpty()) {
+            return List.of();
+        }
+        if (canUseIndex()) {
+            List<List<MemberTeamDto>> result = new ArrayList<>(conds.size());
+            for (MemberSearchCond cond : conds) {
+                result.add(search(cond));
+            }
+            return result;
+        }
+
+        long start = System.nanoTime();
+        Set<String> teamNames = new LinkedHashSet<>();
+        BooleanBuilder any = new BooleanBuilder();
+        for (MemberSearchCond cond : conds) {
+            if (isTeamNameOnly(cond)) {
+                teamNames.add(cond.getTeamName());
+                continue;
+            }
+            BooleanBuilder all = new BooleanBuilder()
+                    .and(usernameEq(cond.getUsername()))
+                    .and(usernameIndex.usernameContains(cond.getUsernameContains()))
+                    .and(teamNameEq(cond.getTeamName()))
+                    .and(ageGoe(cond.getAgeGoe()))
+                    .and(ageLoe(cond.getAgeLoe()));
+            if (!all.hasValue()) { // 조건이 빈 항목이 있으면 어차피 전체를 읽는다
+                any = new BooleanBuilder();
+                teamNames.clear();
+                break;
+            }
+            any.or(all);
+        }
+        if (!teamNames.isEmpty()) {
+            any.or(team.name.in(teamNames));
+        }
+
+        List<MemberTeamDto> rows = queryFactory
+                .select(new QMemberTeamDto(
+                        member.id.as("memberId"),
+                        member.username,
+                        member.age,
+                        team.id.as("teamId"),
+                        team.name.as("teamName")))
+                .from(member)
+                .leftJoin(member.team, team)
+                .where(any)
+                .orderBy(member.id.asc())
+                .fetch();
+
+        List<List<MemberTeamDto>> result = new ArrayList<>(conds.size());
+        int shape = 0;
+        for (MemberSearchCond cond : conds) {
+            List<MemberTeamDto> matched = new ArrayList<>();
+            for (MemberTeamDto row : rows) {
+                if (matches(cond, row)) {
+                    matched.add(row);
+                }
+            }
+            result.add(matched);
+            shape |= MemberSearchMetrics.shape(cond);
+        }
+        // 쿼리는 한 번이므로 한 번만 기록한다. 모양은 조건들의 모양을 합친 것, 건수는 DB 에서 읽은 row 수
+        searchMetrics.record(MemberSearchMetrics.SEARCH_BATCH, shape, Pageable.unpaged(), start, rows.size());
+        return result;
+    }
+
+    private static boolean isTeamNameOnly(MemberSearchCond cond) {
+        return StringUtils.hasText(cond.getTeamName())
+                && !StringUtils.hasText(cond.getUsername())
+                && !StringUtils.hasText(cond.getUsernameContains())
+                && cond.getAgeGoe() == null
+                && cond.getAgeLoe() == null;
+    }
+
+    // where 절의 usernameEq ~ ageLoe 와 같은 판정을 메모리에서 한다
+    private static boolean matches(MemberSearchCond cond, MemberTeamDto row) {
+        if (StringUtils.hasText(cond.getUsername()) && !cond.getUsername().equals(row.getUsername())) {
+            return false;
+        }
+        if (StringUtils.hasText(cond.getUsernameContains()) && (row.getUsername() == null
+                || !row.getUsername().toLowerCase(Locale.ROOT)
+                .contains(cond.getUsernameContains().toLowerCase(Locale.ROOT)))) {
+            return false;
+        }
+        if (StringUtils.hasText(cond.getTeamName()) && !cond.getTeamName().equals(row.getTeamName())) {
+            return false;
+        }
+        if (cond.getAgeGoe() != null && row.getAge() < cond.getAgeGoe()) {
+            return false;
+        }
+        return cond.getAgeLoe() == null || row.getAge() <= cond.getAgeLoe();
+    }
+
+    /**
+     * searchPageComplex 와 같은 조회에 total 을 구하는 방법만 고를 수 있게 한 것. strategy 가 null 이면 설정값을 쓴다.
+     * 내용은 한 건 더 읽어서 다음 페이지 여부를 알고, 마지막 페이지면 어느 전략이든(NONE 포함) count 없이 정확한 total 을 준다.
+     */
+    @Override
+    public MemberCountedPage searchPageCounted(MemberSearchCond cond, Pageable pageable, CountStrategy strategy) {
+        long start = System.nanoTime();
+        CountStrategy requested = strategy != null ? strategy : defaultCountStrategy;
+        Predicate[] where = {usernameEq(cond.getUsername()),
+                usernameIndex.usernameContains(cond.getUsernameContains()),
+                teamNameEq(cond.getTeamName()),
+                ageGoe(cond.getAgeGoe()),
+                ageLoe(cond.getAgeLoe())};
+
+        JPAQuery<MemberTeamDto> query = queryFactory
+                .select(new QMemberTeamDto(
+                        member.id.as("memberId"),
+                        member.username,
+                        member.age,
+                        team.id.as("teamId"),
+                        team.name.as("teamName")))
+                .from(member)
+                .leftJoin(member.team, team)
+                .where(where)
+                .orderBy(MemberSort.orderBy(pageable.getSort()));
+        if (pageable.isPaged()) {
+            query.offset(pageable.getOffset()).limit(pageable.getPageSize() + 1L);
+        }
+        List<MemberTeamDto> rows = query.fetch();
+
+        boolean hasNext = pageable.isPaged() && rows.size() > pageable.getPageSize();
+        List<MemberTeamDto> content = hasNext ? rows.subList(0, pageable.getPageSize()) : rows;
+        long offset = pageable.isPaged() ? pageable.getOffset() : 0;
+        // 최소한 이만큼은 있다. 다음 페이지가 있으면 한 건 더
+        long seen = offset + content.size() + (hasNext ? 1 : 0);
+
+        CountStrategy used = requested;
+        Long total = null;
+        boolean totalCapped = false;
+        if (requested == CountStrategy.ESTIMATED && !canEstimate(cond)) {
+            used = CountStrategy.CAPPED;
+        }
+        if (!hasNext && (!content.isEmpty() || offset == 0)) {
+            used = CountStrategy.EXACT;
+            total = seen;
+        } else if (used == CountStrategy.EXACT) {
+            total = queryFactory
+                    .select(member.count())
+                    .from(member)
+                    .leftJoin(member.team, team)
+                    .where(where)
+                    .fetchOne();
+        } else if (used == CountStrategy.CAPPED) {
+            long counted = cappedCount(cond, countCap + 1L);
+            totalCapped = counted > countCap;
+            total = Math.max(Math.min(counted, countCap), seen);
+        } else if (used == CountStrategy.ESTIMATED) {
+            total = Math.max(estimate(cond), seen);
+        }
+
+        Integer nextCursor = hasNext ? pageable.getPageNumber() + 1 : null;
+        searchMetrics.record(MemberSearchMetrics.SEARCH_PAGE_COUNTED, cond, pageable, start, content.size());
+        return new MemberCountedPage(content, content.size(), used, total, totalCapped, hasNext, nextCursor);
+    }
+
+    // JPQL 은 서브쿼리에 limit 을 못 걸어서 native 로 센다. 정렬이 없으니 limit 건만 스캔하고 멈추고, id 를 읽어 오지도 않는다.
+    // 조건은 searchPageCounted 의 where 와 같아야 한다
+    private long cappedCount(MemberSearchCond cond, long limit) {
+        StringBuilder sql = new StringBuilder("select count(*) from (select 1 from member m");
+        List<String> where = new ArrayList<>();
+        Map<String, Object> params = new HashMap<>();
+        if (StringUtils.hasText(cond.getTeamName())) {
+            sql.append(" join team t on m.team_id = t.id");
+            where.add("t.name = :teamName");
+            params.put("teamName", cond.getTeamName());
+        }
+        if (StringUtils.hasText(cond.getUsername())) {
+            where.add("m.username = :username");
+            params.put("username", cond.getUsername());
+        }
+        if (StringUtils.hasText(cond.getUsernameContains())) {
+            List<Long> ids = usernameIndex.findIdsContaining(cond.getUsernameContains());
+            if (ids != null) {
+                where.add(ids.isEmpty() ? "1 = 0" : "m.member_id in (:ids)");
+                if (!ids.isEmpty()) {
+                    params.put("ids", ids);
+                }
+            } else {
+                String escaped = cond.getUsernameContains().toLowerCase(Locale.ROOT)
+                        .replace("!", "!!").replace("%", "!%").replace("_", "!_");
+                where.add("lower(m.username) like :usernameContains escape '!'");
+                params.put("usernameContains", "%" + escaped + "%");
+            }
+        }
+        if (cond.getAgeGoe() != null) {
+            where.add("m.age >= :ageGoe");
+            params.put("ageGoe", cond.getAgeGoe());
+        }
+        if (cond.getAgeLoe() != null) {
+            where.add("m.age <= :ageLoe");
+            params.put("ageLoe", cond.getAgeLoe());
+        }
+        if (!where.isEmpty()) {
+            sql.append(" where ").append(String.join(" and ", where));
+        }
+        sql.append(" limit :limit) capped");
+        params.put("limit", limit);
+
+        Query query = em.createNativeQuery(sql.toString());
+        params.forEach(query::setParameter);
+        return ((Number) query.getSingleResult()).longValue();
+    }
+
+    // team_stat 에는 팀/나이 분포만 있으므로 username 조건이 있으면 추정할 수 없다
+    private static boolean canEstimate(MemberSearchCond cond) {
+        return !StringUtils.hasText(cond.getUsername()) && !StringUtils.hasText(cond.getUsernameContains());
+    }
+
+    /**
+     * team_stat(팀별 멤버 수, 나이 최소/최대)으로 건수를 추정한다. 팀 안에서 나이는 고르게 분포한다고 본다.
+     * 팀이 없는 멤버는 team_stat 에 없으므로 빠진다.
+     */
+    private long estimate(MemberSearchCond cond) {
+        List<Tuple> stats = queryFactory
+                .select(teamStat.memberCount, teamStat.ageMin, teamStat.ageMax)
+                .from(teamStat)
+                .join(team).on(team.id.eq(teamStat.teamId))
+                .where(teamNameEq(cond.getTeamName()))
+                .fetch();
+
+        double estimate = 0;
+        for (Tuple stat : stats) {
+            long count = stat.get(teamStat.memberCount);
+            Integer min = stat.get(teamStat.ageMin);
+            Integer max = stat.get(teamStat.ageMax);
+            if (count <= 0 || min == null || max == null) {
+                continue;
+            }
+            int low = cond.getAgeGoe() != null ? Math.max(min, cond.getAgeGoe()) : min;
+            int high = cond.getAgeLoe() != null ? Math.min(max, cond.getAgeLoe()) : max;
+            if (low <= high) {
+                estimate += count * (double) (high - low + 1) / (max - min + 1);
+            }
+        }
+        return Math.round(estimate);
+    }
+
+    private boolean canUseIndex() {
+        return memberSearchIndex.isReady() && !IndexSync.inReadWriteTransaction();
+    }
+
     private BooleanExpression usernameEq(String username) {
         return StringUtils.hasText(username) ? member.username.eq(username) : null;
     }
@@ -0,0 +1,382 @@
+package study.querydsl.repository;
+
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+import com.querydsl.core.Tuple;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import javax.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.StringUtils;
+import study.querydsl.dto.MemberSearchCond;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.repository.MemberChangeEvent.Kind;
+import study.querydsl.repository.MemberChangeEvent.Target;
+
+/**
+ * MemberSearchCond 검색을 DB 없이 처리하는 인메모리 인덱스.
+ * username/teamName 은 해시로, age 범위는 정렬된 int[] 에 이분 탐색으로 찾는다.
+ * 쓰기는 드물다고 보고, 변경이 생기면 다음 조회 때 스냅샷을 통째로 다시 만든다.
+ * 비활성이거나 stale 이면 ready 가 false 이고, 호출자는 Querydsl 로 조회해야 한다.
+ * invalidate 되면 rebuild-delay-ms 뒤에 별도 스레드에서 다시 만든다.
+ * 반환하는 MemberTeamDto 는 스냅샷과 공유되므로 수정하지 않는다.
+ */
+@Slf4j
+@Component
+public class MemberSearchIndex implements MemberChangeSubscriber {
+
+    private final JPAQueryFactory queryFactory;
+    private final TransactionTemplate reloadTx;
+    private final boolean enabled;
+    private final DebouncedRebuild rebuilder;
+
+    private final Map<Long, Row> rows = new HashMap<>();
+    private final Map<Long, String> teamNames = new HashMap<>();
+    private final List<Runnable> replay = new ArrayList<>();
+    private boolean rebuilding;
+    // 락 없이 읽으므로 volatile. apply() 의 변경이 다음 검색에서 보이게 한다
+    private volatile boolean dirty;
+
+    private volatile boolean ready;
+    // rebuild 가 읽는 동안 invalidate 되면 그 결과로 ready 가 되면 안 된다
+    private long invalidations;
+    private volatile Snapshot snapshot = Snapshot.EMPTY;
+
+    public MemberSearchIndex(JPAQueryFactory queryFactory, PlatformTransactionManager transactionManager,
+            @Value("${member.search.index.enabled:false}") boolean enabled,
+            @Value("${member.search.index.rebuild-delay-ms:1000}") long rebuildDelayMillis) {
+        this.queryFactory = queryFactory;
+        this.reloadTx = IndexSync.reloadTransaction(transactionManager);
+        this.enabled = enabled;
+        this.rebuilder = new DebouncedRebuild("member-search-index", rebuildDelayMillis, this::isReady,
+                () -> reloadTx.executeWithoutResult(status -> rebuild()));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        rebuilder.shutdown();
+    }
+
+    public boolean isReady() {
+        return enabled && ready;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void rebuild() {
+        if (!enabled) {
+            return;
+        }
+        long generation;
+        synchronized (this) {
+            rebuilding = true;
+            replay.clear();
+            generation = invalidations;
+        }
+        long start = System.nanoTime();
+
+        Map<Long, String> loadedTeams = new HashMap<>();
+        for (Tuple tuple : queryFactory.select(team.id, team.name).from(team).fetch()) {
+            loadedTeams.put(tuple.get(team.id), tuple.get(team.name));
+        }
+        Map<Long, Row> loadedRows = new HashMap<>();
+        List<Tuple> tuples = queryFactory
+                .select(member.id, member.username, member.age, member.team.id)
+                .from(member)
+                .fetch();
+        for (Tuple tuple : tuples) {
+            Long id = tuple.get(member.id);
+            loadedRows.put(id, new Row(id, tuple.get(member.username), tuple.get(member.age),
+                    tuple.get(member.team.id)));
+        }
+
+        synchronized (this) {
+            rows.clear();
+            rows.putAll(loadedRows);
+            teamNames.clear();
+            teamNames.putAll(loadedTeams);
+            // 읽는 동안 커밋된 변경을 다시 반영한다
+            replay.forEach(Runnable::run);
+            replay.clear();
+            rebuilding = false;
+            dirty = true;
+            // 그 사이 invalidate 됐으면 이미 다음 rebuild 가 예약돼 있다
+            ready = generation == invalidations;
+        }
+        log.info("member search index built. members={}, teams={}, {}ms",
+                loadedRows.size(), loadedTeams.size(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * 벌크 연산처럼 리스너를 거치지 않는 변경 뒤에 호출한다. 다시 만들어질 때까지는 DB 로 조회된다.
+     */
+    public void invalidate() {
+        if (!enabled) {
+            return;
+        }
+        synchronized (this) {
+            invalidations++;
+            ready = false;
+        }
+        rebuilder.request();
+    }
+
+    /**
+     * 벌크 연산으로 바뀐 행만 다시 읽어 반영한다. 대상 id 를 모르면 invalidate 한다.
+     * 엔티티 단위 변경은 MemberIndexListener 가 직접 넘겨주므로 무시한다.
+     * afterCommit 에서 불리므로 커밋이 끝난 트랜잭션의 EntityManager 대신 새 읽기 전용 트랜잭션에서 읽는다.
+     */
+    @Override
+    public void onChange(MemberChangeEvent event) {
+        if (!enabled || !event.isBulk()) {
+            return;
+        }
+        if (!event.isIdsKnown()) {
+            invalidate();
+            return;
+        }
+        List<Long> ids = event.getIds();
+        if (event.getTarget() == Target.MEMBER) {
+            List<Row> reloaded = event.getKind() == Kind.BULK_DELETED ? List.of()
+                    : reloadTx.execute(status -> reloadMembers(ids));
+            apply(() -> {
+                ids.forEach(rows::remove);
+                reloaded.forEach(row -> rows.put(row.id, row));
+            });
+        } else {
+            Map<Long, String> reloaded = event.getKind() == Kind.BULK_DELETED ? Map.of()
+                    : reloadTx.execute(status -> reloadTeams(ids));
+            apply(() -> {
+                ids.forEach(teamNames::remove);
+                teamNames.putAll(reloaded);
+            });
+        }
+    }
+
+    private List<Row> reloadMembers(List<Long> ids) {
+        List<Row> reloaded = new ArrayList<>();
+        for (Tuple tuple : queryFactory
+                .select(member.id, member.username, member.age, member.team.id)
+                .from(member)
+                .where(member.id.in(ids))
+                .fetch()) {
+            reloaded.add(new Row(tuple.get(member.id), tuple.get(member.username), tuple.get(member.age),
+                    tuple.get(member.team.id)));
+        }
+        return reloaded;
+    }
+
+    private Map<Long, String> reloadTeams(List<Long> ids) {
+        Map<Long, String> reloaded = new HashMap<>();
+        for (Tuple tuple : queryFactory.select(team.id, team.name).from(team).where(team.id.in(ids)).fetch()) {
+            reloaded.put(tuple.get(team.id), tuple.get(team.name));
+        }
+        return reloaded;
+    }
+
+    public List<MemberTeamDto> search(MemberSearchCond cond) {
+        return currentSnapshot().search(cond);
+    }
+
+    void memberSaved(Long id, String username, int age, Long teamId) {
+        afterCommit(() -> rows.put(id, new Row(id, username, age, teamId)));
+    }
+
+    void memberRemoved(Long id) {
+        afterCommit(() -> rows.remove(id));
+    }
+
+    void teamSaved(Long id, String name) {
+        afterCommit(() -> teamNames.put(id, name));
+    }
+
+    void teamRemoved(Long id) {
+        afterCommit(() -> teamNames.remove(id));
+    }
+
+    private void afterCommit(Runnable change) {
+        if (enabled) {
+            IndexSync.afterCommit(() -> apply(change));
+        }
+    }
+
+    private synchronized void apply(Runnable change) {
+        change.run();
+        if (rebuilding) {
+            replay.add(change);
+        }
+        dirty = true;
+    }
+
+    private Snapshot currentSnapshot() {
+        Snapshot current = snapshot;
+        if (!dirty) {
+            return current;
+        }
+        synchronized (this) {
+            if (dirty) {
+                snapshot = new Snapshot(rows.values(), teamNames);
+                dirty = false;
+            }
+            return snapshot;
+        }
+    }
+
+    private static final class Row {
+
+        private final long id;
+        private final String username;
+        private final int age;
+        private final Long teamId;
+
+        Row(long id, String username, int age, Long teamId) {
+            this.id = id;
+            this.username = username;
+            this.age = age;
+            this.teamId = teamId;
+        }
+    }
+
+    /**
+     * 불변 스냅샷. rows 는 id 오름차순이고, 나머지 인덱스는 rows 의 위치(int)를 가리킨다.
+     */
+    private static final class Snapshot {
+
+        static final Snapshot EMPTY = new Snapshot(Collections.emptyList(), Collections.emptyMap());
+
+        private final MemberTeamDto[] rows;
+        private final Map<String, int[]> byUsername = new HashMap<>();
+        private final Map<String, int[]> byTeamName = new HashMap<>();
+        private final int[] sortedAges;
+        private final int[] agePositions;
+
+        Snapshot(Iterable<Row> source, Map<Long, String> teamNames) {
+            List<Row> sorted = new ArrayList<>();
+            source.forEach(sorted::add);
+            sorted.sort((a, b) -> Long.compare(a.id, b.id));
+
+            int size = sorted.size();
+            rows = new MemberTeamDto[size];
+            Map<String, List<Integer>> usernames = new HashMap<>();
+            Map<String, List<Integer>> teams = new HashMap<>();
+            long[] ageKeys = new long[size];
+            for (int i = 0; i < size; i++) {
+                Row row = sorted.get(i);
+                String teamName = row.teamId == null ? null : teamNames.get(row.teamId);
+                rows[i] = new MemberTeamDto(row.id, row.username, row.age, row.teamId, teamName);
+                if (row.username != null) {
+                    usernames.computeIfAbsent(row.username, k -> new ArrayList<>()).add(i);
+                }
+                if (teamName != null) {
+                    teams.computeIfAbsent(teamName, k -> new ArrayList<>()).add(i);
+                }
+                // 상위 32비트에 age, 하위 32비트에 위치를 넣어 boxing 없이 age 순으로 정렬
+                ageKeys[i] = ((long) row.age << 32) | i;
+            }
+            usernames.forEach((k, v) -> byUsername.put(k, toArray(v)));
+            teams.forEach((k, v) -> byTeamName.put(k, toArray(v)));
+
+            Arrays.sort(ageKeys);
+            sortedAges = new int[size];
+            agePositions = new int[size];
+            for (int i = 0; i < size; i++) {
+                sortedAges[i] = (int) (ageKeys[i] >> 32);
+                agePositions[i] = (int) ageKeys[i];
+            }
+        }
+
+        List<MemberTeamDto> search(MemberSearchCond cond) {
+            int[] candidates = null;
+            if (StringUtils.hasText(cond.getUsername())) {
+                candidates = byUsername.getOrDefault(cond.getUsername(), new int[0]);
+            }
+            if (StringUtils.hasText(cond.getTeamName())) {
+                candidates = smaller(candidates, byTeamName.getOrDefault(cond.getTeamName(), new int[0]));
+            }
+            if (cond.getAgeGoe() != null || cond.getAgeLoe() != null) {
+                candidates = smaller(candidates, ageRange(cond.getAgeGoe(), cond.getAgeLoe()));
+            }
+
+            List<MemberTeamDto> result = new ArrayList<>();
+            if (candidates == null && StringUtils.hasText(cond.getUsernameContains())) {
+                candidates = allPositions();
+            }
+            if (candidates == null) {
+                Collections.addAll(result, rows);
+                return result;
+            }
+            for (int position : candidates) {
+                MemberTeamDto row = rows[position];
+                if (matches(row, cond)) {
+                    result.add(row);
+                }
+            }
+            return result;
+        }
+
+        private int[] ageRange(Integer goe, Integer loe) {
+            int from = goe == null ? 0 : lowerBound(goe);
+            int to = loe == null || loe == Integer.MAX_VALUE ? sortedAges.length : lowerBound(loe + 1);
+            if (from >= to) {
+                return new int[0];
+            }
+            int[] positions = Arrays.copyOfRange(agePositions, from, to);
+            Arrays.sort(positions); // id 순서를 유지
+            return positions;
+        }
+
+        private int lowerBound(int age) {
+            int low = 0;
+            int high = sortedAges.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (sortedAges[mid] < age) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        private static boolean matches(MemberTeamDto row, MemberSearchCond cond) {
+            return (!StringUtils.hasText(cond.getUsername()) || cond.getUsername().equals(row.getUsername()))
+                    && (!StringUtils.hasText(cond.getUsernameContains()) || (row.getUsername() != null
+                    && row.getUsername().toLowerCase(Locale.ROOT)
+                    .contains(cond.getUsernameContains().toLowerCase(Locale.ROOT))))
+                    && (!StringUtils.hasText(cond.getTeamName()) || cond.getTeamName().equals(row.getTeamName()))
+                    && (cond.getAgeGoe() == null || row.getAge() >= cond.getAgeGoe())
+                    && (cond.getAgeLoe() == null || row.getAge() <= cond.getAgeLoe());
+        }
+
+        private int[] allPositions() {
+            int[] positions = new int[rows.length];
+            for (int i = 0; i < positions.length; i++) {
+                positions[i] = i;
+            }
+            return positions;
+        }
+
+        private static int[] smaller(int[] current, int[] other) {
+            return current == null || other.length < current.length ? other : current;
+        }
+
+        private static int[] toArray(List<Integer> positions) {
+            return positions.stream().mapToInt(Integer::intValue).toArray();
+        }
+    }
+}
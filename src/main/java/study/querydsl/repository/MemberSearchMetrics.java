@@ -0,0 +1,197 @@
+package study.querydsl.repository;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.HistogramSnapshot;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.StringJoiner;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Supplier;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+import study.querydsl.dto.MemberSearchCond;
+import study.querydsl.dto.MemberSearchShapeStat;
+
+/**
+ * MemberSearchCond 검색의 지연과 결과 건수를 조건 모양(채워진 필드 bitmask)과 페이지 깊이별로 기록한다.
+ * 분위수는 Micrometer 의 HdrHistogram 기반 구간 히스토그램으로 계산된다.
+ * 미터는 (method, shape, depth) 마다 처음 한 번만 만들고 배열에 두므로, 기록 시에는 할당이 없다.
+ * 워밍업처럼 실제 트래픽이 아닌 호출은 unrecorded 안에서 실행해 분위수에 섞이지 않게 한다.
+ */
+@Component
+public class MemberSearchMetrics {
+
+    public static final int SEARCH = 0;
+    public static final int SEARCH_INDEX = 1;
+    public static final int SEARCH_PAGE_SIMPLE = 2;
+    public static final int SEARCH_PAGE_COMPLEX = 3;
+    public static final int JPA_SEARCH = 4;
+    public static final int SEARCH_PAGE_COUNTED = 5;
+    public static final int SEARCH_BATCH = 6;
+
+    private static final String[] METHODS = {
+            "search", "searchIndex", "searchPageSimple", "searchPageComplex", "jpaSearch", "searchPageCounted",
+            "searchBatch"};
+    private static final String[] FIELDS = {"username", "usernameContains", "teamName", "ageGoe", "ageLoe"};
+    private static final String[] DEPTHS = {"unpaged", "first", "2-10", "11+"};
+    private static final int SHAPES = 1 << FIELDS.length;
+
+    private final MeterRegistry meterRegistry;
+    private final AtomicReferenceArray<Meters> meters =
+            new AtomicReferenceArray<>(METHODS.length * SHAPES * DEPTHS.length);
+    private final ThreadLocal<Boolean> suppressed = ThreadLocal.withInitial(() -> false);
+
+    public MemberSearchMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    public void record(int method, MemberSearchCond cond, Pageable pageable, long startNanos, int rows) {
+        record(method, shape(cond), pageable, startNanos, rows);
+    }
+
+    /**
+     * 여러 조건을 한 번에 실행한 경우처럼 모양을 직접 정해 기록한다. shape 는 shape(cond) 와 같은 bitmask.
+     */
+    public void record(int method, int shape, Pageable pageable, long startNanos, int rows) {
+        if (suppressed.get()) {
+            return;
+        }
+        long elapsed = System.nanoTime() - startNanos;
+        Meters m = meters(method, shape, depth(pageable));
+        m.latency.record(elapsed, TimeUnit.NANOSECONDS);
+        m.rows.record(rows);
+    }
+
+    /**
+     * 현재 스레드에서 call 을 실행하는 동안은 record 를 무시한다.
+     */
+    public <T> T unrecorded(Supplier<T> call) {
+        boolean previous = suppressed.get();
+        suppressed.set(true);
+        try {
+            return call.get();
+        } finally {
+            suppressed.set(previous);
+        }
+    }
+
+    /**
+     * 기록된 모양별 요약. 총 소요 시간이 큰 순서다.
+     */
+    public List<MemberSearchShapeStat> stats() {
+        List<MemberSearchShapeStat> result = new ArrayList<>();
+        for (int i = 0; i < meters.length(); i++) {
+            Meters m = meters.get(i);
+            if (m == null) {
+                continue;
+            }
+            HistogramSnapshot latency = m.latency.takeSnapshot();
+            HistogramSnapshot rows = m.rows.takeSnapshot();
+            result.add(new MemberSearchShapeStat(m.method, m.shape, m.depth,
+                    latency.count(),
+                    latency.total(TimeUnit.MILLISECONDS),
+                    latency.mean(TimeUnit.MILLISECONDS),
+                    percentile(latency, 0.5, true),
+                    percentile(latency, 0.95, true),
+                    percentile(latency, 0.99, true),
+                    latency.max(TimeUnit.MILLISECONDS),
+                    rows.mean(),
+                    percentile(rows, 0.99, false),
+                    rows.max()));
+        }
+        result.sort(Comparator.comparingDouble(MemberSearchShapeStat::getTotalMs).reversed());
+        return result;
+    }
+
+    // 채워진 필드마다 한 비트. 0 이면 조건 없음(전체 조회)
+    static int shape(MemberSearchCond cond) {
+        int shape = 0;
+        if (StringUtils.hasText(cond.getUsername())) {
+            shape |= 1;
+        }
+        if (StringUtils.hasText(cond.getUsernameContains())) {
+            shape |= 1 << 1;
+        }
+        if (StringUtils.hasText(cond.getTeamName())) {
+            shape |= 1 << 2;
+        }
+        if (cond.getAgeGoe() != null) {
+            shape |= 1 << 3;
+        }
+        if (cond.getAgeLoe() != null) {
+            shape |= 1 << 4;
+        }
+        return shape;
+    }
+
+    static String shapeName(int shape) {
+        if (shape == 0) {
+            return "none";
+        }
+        StringJoiner joiner = new StringJoiner("+");
+        for (int i = 0; i < FIELDS.length; i++) {
+            if ((shape & (1 << i)) != 0) {
+                joiner.add(FIELDS[i]);
+            }
+        }
+        return joiner.toString();
+    }
+
+    static int depth(Pageable pageable) {
+        if (pageable.isUnpaged()) {
+            return 0;
+        }
+        int page = pageable.getPageNumber();
+        return page == 0 ? 1 : page < 10 ? 2 : 3;
+    }
+
+    private Meters meters(int method, int shape, int depth) {
+        int slot = (method * SHAPES + shape) * DEPTHS.length + depth;
+        Meters m = meters.get(slot);
+        if (m == null) {
+            // 경합으로 두 번 만들어도 레지스트리가 같은 미터를 돌려준다
+            m = new Meters(meterRegistry, METHODS[method], shapeName(shape), DEPTHS[depth]);
+            meters.compareAndSet(slot, null, m);
+        }
+        return m;
+    }
+
+    private static double percentile(HistogramSnapshot snapshot, double percentile, boolean millis) {
+        for (ValueAtPercentile value : snapshot.percentileValues()) {
+            if (value.percentile() == percentile) {
+                return millis ? value.value(TimeUnit.MILLISECONDS) : value.value();
+            }
+        }
+        return Double.NaN;
+    }
+
+    private static final class Meters {
+
+        private final String method;
+        private final String shape;
+        private final String depth;
+        private final Timer latency;
+        private final DistributionSummary rows;
+
+        Meters(MeterRegistry registry, String method, String shape, String depth) {
+            this.method = method;
+            this.shape = shape;
+            this.depth = depth;
+            this.latency = Timer.builder("member.search.latency")
+                    .tags("method", method, "shape", shape, "depth", depth)
+                    .publishPercentiles(0.5, 0.95, 0.99)
+                    .percentilePrecision(2)
+                    .register(registry);
+            this.rows = DistributionSummary.builder("member.search.rows")
+                    .tags("method", method, "shape", shape, "depth", depth)
+                    .publishPercentiles(0.5, 0.99)
+                    .register(registry);
+        }
+    }
+}
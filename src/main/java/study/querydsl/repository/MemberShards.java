@@ -0,0 +1,127 @@
+package study.querydsl.repository;
+
+import com.zaxxer.hikari.HikariDataSource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import javax.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.flywaydb.core.Flyway;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Member/Team 샤드 DataSource 묶음. team id 로 샤드를 고른다 (teamId mod N, 팀 없는 member 는 0번).
+ * urls 를 주지 않으면 count 개의 인메모리 H2 를 대신 띄운다. 스키마는 각 샤드에 db/migration 으로 만든다.
+ * 샤드 DataSource 는 빈으로 등록하지 않는다. 기본 DataSource(JPA) 와 섞이지 않게 하기 위해서다.
+ * 샤드 수를 바꾸면 기존 id 의 위치가 바뀌므로 재배치 없이 바꿀 수 없다.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "member.shards.enabled", havingValue = "true")
+public class MemberShards {
+
+    private final List<HikariDataSource> dataSources = new ArrayList<>();
+    private final List<NamedParameterJdbcTemplate> templates = new ArrayList<>();
+    private final boolean standIn;
+    private final ExecutorService executor;
+
+    public MemberShards(@Value("${member.shards.urls:}") List<String> urls,
+            @Value("${member.shards.count:4}") int count,
+            @Value("${member.shards.pool-size:4}") int poolSize,
+            @Value("${member.shards.username:sa}") String username,
+            @Value("${member.shards.password:}") String password) {
+        this.standIn = urls.isEmpty();
+        List<String> targets = standIn ? standIns(count) : urls;
+        for (int i = 0; i < targets.size(); i++) {
+            HikariDataSource dataSource = new HikariDataSource();
+            dataSource.setPoolName("member-shard-" + i);
+            dataSource.setJdbcUrl(targets.get(i));
+            dataSource.setUsername(username);
+            dataSource.setPassword(password);
+            dataSource.setMaximumPoolSize(poolSize);
+            Flyway.configure()
+                    .dataSource(dataSource)
+                    .locations("classpath:db/migration")
+                    .baselineOnMigrate(true)
+                    .load()
+                    .migrate();
+            dataSources.add(dataSource);
+            templates.add(new NamedParameterJdbcTemplate(dataSource));
+        }
+
+        AtomicInteger threads = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(targets.size() * poolSize, runnable -> {
+            Thread thread = new Thread(runnable, "member-shard-query-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        log.info("member shards ready. shards={}, standIn={}", targets.size(), standIn);
+    }
+
+    public int size() {
+        return templates.size();
+    }
+
+    public NamedParameterJdbcTemplate shard(int shard) {
+        return templates.get(shard);
+    }
+
+    public int shardOf(Long teamId) {
+        return teamId == null ? 0 : Math.floorMod(teamId, templates.size());
+    }
+
+    /**
+     * shards 마다 work 를 병렬로 실행하고 shards 순서대로 결과를 돌려준다. 하나라도 실패하면 그 예외를 던진다.
+     */
+    public <T> List<T> fanOut(List<Integer> shards, Function<NamedParameterJdbcTemplate, T> work) {
+        if (shards.size() == 1) {
+            return List.of(work.apply(templates.get(shards.get(0))));
+        }
+        List<CompletableFuture<T>> futures = new ArrayList<>(shards.size());
+        for (int shard : shards) {
+            futures.add(CompletableFuture.supplyAsync(() -> work.apply(templates.get(shard)), executor));
+        }
+        List<T> results = new ArrayList<>(shards.size());
+        try {
+            for (CompletableFuture<T> future : futures) {
+                results.add(future.join());
+            }
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+        return results;
+    }
+
+    @PreDestroy
+    public void close() {
+        executor.shutdownNow();
+        for (HikariDataSource dataSource : dataSources) {
+            if (standIn) {
+                // DB_CLOSE_DELAY=-1 이라 명시적으로 내려야 메모리가 풀린다
+                new NamedParameterJdbcTemplate(dataSource).getJdbcTemplate().execute("shutdown");
+            }
+            dataSource.close();
+        }
+    }
+
+    private static List<String> standIns(int count) {
+        String prefix = "jdbc:h2:mem:member-shard-" + UUID.randomUUID().toString().substring(0, 8) + "-";
+        List<String> urls = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            urls.add(prefix + i + ";DB_CLOSE_DELAY=-1");
+        }
+        return urls;
+    }
+}
@@ -0,0 +1,54 @@
+package study.querydsl.repository;
+
+import static study.querydsl.entity.QMember.member;
+
+import com.querydsl.core.types.OrderSpecifier;
+import com.querydsl.core.types.dsl.ComparableExpressionBase;
+import java.util.Map;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Sort;
+
+/**
+ * Pageable 의 Sort 를 MemberTeamDto 검색용 OrderSpecifier 로 바꾼다.
+ * 인덱스가 있는 member 컬럼(화이트리스트)만 정렬 키로 쓰고, 그중 첫 번째 하나만 쓴다.
+ * teamName 은 조인한 team 쪽 컬럼이라 member 를 읽는 순서로 정렬할 수 없어 받지 않는다.
+ * 단일 컬럼 인덱스로는 여러 키 정렬을 처리할 수 없어 전체 정렬(filesort)이 일어나기 때문이다.
+ * 나머지 키와 ignoreCase 는 버린다. 마지막에 member.id 를 붙여 같은 값끼리도 순서가 항상 같게 한다.
+ */
+@Slf4j
+public final class MemberSort {
+
+    // 정렬 property -> 경로. 모두 member 의 인덱스가 있다 (PK, idx_member_username, idx_member_age)
+    private static final Map<String, ComparableExpressionBase<?>> WHITELIST = Map.of(
+            "memberId", member.id,
+            "username", member.username,
+            "age", member.age);
+
+    private MemberSort() {
+    }
+
+    /**
+     * 화이트리스트에 있는 정렬 키만 남긴다.
+     */
+    public static Sort supported(Sort sort) {
+        return Sort.by(sort.filter(order -> WHITELIST.containsKey(order.getProperty())).toList());
+    }
+
+    static OrderSpecifier<?>[] orderBy(Sort sort) {
+        for (Sort.Order order : sort) {
+            ComparableExpressionBase<?> path = WHITELIST.get(order.getProperty());
+            if (path == null) {
+                log.debug("unsupported sort ignored. property={}", order.getProperty());
+                continue;
+            }
+            boolean asc = order.isAscending();
+            OrderSpecifier<Long> tiebreaker = asc ? member.id.asc() : member.id.desc();
+            if (path == member.id) {
+                return new OrderSpecifier<?>[]{tiebreaker};
+            }
+            // 인덱스를 역방향으로 읽을 수 있도록 tiebreaker 도 같은 방향이다
+            return new OrderSpecifier<?>[]{asc ? path.asc() : path.desc(), tiebreaker};
+        }
+        return new OrderSpecifier<?>[]{member.id.asc()};
+    }
+}
@@ -0,0 +1,422 @@
+package study.querydsl.repository;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import javax.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.util.StringUtils;
+import study.querydsl.dto.MemberKeysetPage;
+import study.querydsl.dto.MemberSearchCond;
+import study.querydsl.dto.MemberTeamDto;
+
+/**
+ * MemberShards 위의 scatter-gather 검색.
+ * teamName 이 있으면 팀 디렉터리(팀 이름 -> 샤드)로 해당 샤드에만 보낸다. 없으면 모든 샤드에 병렬로 보내고 정렬 병합한다.
+ * 디렉터리에 없는 팀 이름(다른 인스턴스가 만든 팀 등)은 모든 샤드에 물어보고 찾은 샤드를 등록한다.
+ * 페이지는 샤드마다 offset + size 건을 같은 순서로 읽어 병합한 뒤 offset 을 건너뛴다. total 은 샤드별 count 의 합이다.
+ * offset 이 깊을수록 샤드마다 읽는 양이 늘어나므로, 깊은 탐색은 searchAfter(keyset)를 쓴다.
+ * 정렬은 MemberSort 와 같은 화이트리스트(memberId, username, age)의 첫 키 하나 + member_id 이다.
+ * <p>
+ * 쓰기는 saveTeam/saveMember 로만 샤드에 들어가고, JPA 로 기본 DB 에 쓰는 기존 경로는 샤드로 보내지 않는다.
+ * 대신 기동 시 샤드가 모두 비어 있으면(backfill=true, 인메모리 대역 포함) 기본 DB 의 team/member 를 team id 기준으로 나눠 복사한다.
+ * 그 뒤 기본 DB 에 생긴 변경은 반영되지 않으므로, 샤드 검색은 기동 시점 스냅숏 + 샤드 API 로 쓴 데이터다.
+ */
+@Slf4j
+@Repository
+@ConditionalOnProperty(name = "member.shards.enabled", havingValue = "true")
+public class ShardedMemberRepository {
+
+    private static final String SELECT = "select m.member_id, m.username, m.age, t.id, t.name"
+            + " from member m left join team t on m.team_id = t.id";
+    private static final String COUNT = "select count(*) from member m left join team t on m.team_id = t.id";
+
+    private static final RowMapper<MemberTeamDto> ROW = (rs, rowNum) -> {
+        long teamId = rs.getLong(4);
+        return new MemberTeamDto(rs.getLong(1), rs.getString(2), rs.getInt(3),
+                rs.wasNull() ? null : teamId, rs.getString(5));
+    };
+
+    private static final int BACKFILL_BATCH = 1000;
+
+    private final MemberShards shards;
+    private final NamedParameterJdbcTemplate primary;
+    private final boolean backfill;
+    private final Map<String, Set<Integer>> shardsByTeamName = new ConcurrentHashMap<>();
+    private final AtomicInteger nextTeamShard = new AtomicInteger();
+
+    public ShardedMemberRepository(MemberShards shards, NamedParameterJdbcTemplate primary,
+            @Value("${member.shards.backfill:true}") boolean backfill) {
+        this.shards = shards;
+        this.primary = primary;
+        this.backfill = backfill;
+    }
+
+    @PostConstruct
+    public void init() {
+        if (backfill) {
+            backfill();
+        }
+        loadTeamDirectory();
+    }
+
+    /**
+     * 샤드가 모두 비어 있으면 기본 DB 의 team, member 를 shardOf(teamId) 샤드로 복사한다. 이미 데이터가 있으면 건드리지 않는다.
+     * 복사한 id 와 saveTeam/saveMember 가 만드는 id 가 겹치지 않게 샤드 시퀀스를 복사한 최대 id 뒤로 옮긴다.
+     */
+    void backfill() {
+        List<Long> existing = shards.fanOut(allShards(), t -> t.getJdbcTemplate().queryForObject(
+                "select (select count(*) from team) + (select count(*) from member)", Long.class));
+        if (existing.stream().anyMatch(count -> count != null && count > 0)) {
+            log.info("member shards already have data. skip backfill");
+            return;
+        }
+
+        long start = System.nanoTime();
+        long[] maxId = {0};
+        ShardBatches teams = new ShardBatches("insert into team (id, name, version) values (:id, :name, 0)");
+        primary.getJdbcTemplate().query("select id, name from team", rs -> {
+            long id = rs.getLong(1);
+            maxId[0] = Math.max(maxId[0], id);
+            teams.add(shards.shardOf(id), new MapSqlParameterSource("id", id).addValue("name", rs.getString(2)));
+        });
+        teams.flush();
+
+        // 팀을 먼저 다 넣어야 member 의 FK 가 맞는다. member 는 팀과 같은 샤드로 간다
+        ShardBatches members = new ShardBatches("insert into member (member_id, username, age, team_id, version)"
+                + " values (:id, :username, :age, :teamId, 0)");
+        primary.getJdbcTemplate().query("select member_id, username, age, team_id from member", rs -> {
+            long id = rs.getLong(1);
+            long teamId = rs.getLong(4);
+            Long team = rs.wasNull() ? null : teamId;
+            maxId[0] = Math.max(maxId[0], id);
+            members.add(shards.shardOf(team), new MapSqlParameterSource("id", id)
+                    .addValue("username", rs.getString(2))
+                    .addValue("age", rs.getInt(3))
+                    .addValue("teamId", team));
+        });
+        members.flush();
+
+        long restart = maxId[0] / shards.size() + 1;
+        shards.fanOut(allShards(), t -> {
+            t.getJdbcTemplate().execute("alter sequence hibernate_sequence restart with " + restart);
+            return null;
+        });
+        log.info("member shards backfilled. teams={}, members={}, {}ms",
+                teams.rows, members.rows, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    public void loadTeamDirectory() {
+        List<List<String>> names = shards.fanOut(allShards(),
+                t -> t.getJdbcTemplate().queryForList("select name from team", String.class));
+        for (int shard = 0; shard < names.size(); shard++) {
+            for (String name : names.get(shard)) {
+                register(name, shard);
+            }
+        }
+    }
+
+    // 새 팀은 샤드를 돌아가며 배정한다. id 는 (샤드 시퀀스 * N + 샤드) 라서 id 만으로 샤드를 알 수 있다
+    public long saveTeam(String name) {
+        int shard = Math.floorMod(nextTeamShard.getAndIncrement(), shards.size());
+        long id = nextId(shard);
+        shards.shard(shard).update("insert into team (id, name, version) values (:id, :name, 0)",
+                new MapSqlParameterSource("id", id).addValue("name", name));
+        register(name, shard);
+        return id;
+    }
+
+    public long saveMember(String username, int age, Long teamId) {
+        int shard = shards.shardOf(teamId);
+        long id = nextId(shard);
+        shards.shard(shard).update("insert into member (member_id, username, age, team_id, version)"
+                        + " values (:id, :username, :age, :teamId, 0)",
+                new MapSqlParameterSource("id", id)
+                        .addValue("username", username)
+                        .addValue("age", age)
+                        .addValue("teamId", teamId));
+        return id;
+    }
+
+    public List<MemberTeamDto> search(MemberSearchCond cond) {
+        SortKey key = SortKey.ID_ASC;
+        List<List<MemberTeamDto>> parts = shards.fanOut(targets(cond), t -> {
+            MapSqlParameterSource params = new MapSqlParameterSource();
+            return t.query(SELECT + where(cond, null, params) + key.orderBy(), params, ROW);
+        });
+        return merge(parts, key.comparator(), 0, Integer.MAX_VALUE);
+    }
+
+    public Page<MemberTeamDto> searchPage(MemberSearchCond cond, Pageable pageable) {
+        if (pageable.isUnpaged()) {
+            List<MemberTeamDto> content = search(cond);
+            return new PageImpl<>(content, pageable, content.size());
+        }
+        SortKey key = SortKey.of(pageable.getSort());
+        long window = pageable.getOffset() + pageable.getPageSize();
+        List<ShardPage> parts = shards.fanOut(targets(cond), t -> {
+            MapSqlParameterSource params = new MapSqlParameterSource("limit", window);
+            String where = where(cond, null, params);
+            List<MemberTeamDto> rows = t.query(SELECT + where + key.orderBy() + " limit :limit", params, ROW);
+            // 창을 다 못 채웠으면 그게 전부라 count 를 생략한다
+            long count = rows.size() < window ? rows.size() : count(t, where, params);
+            return new ShardPage(rows, count);
+        });
+
+        List<List<MemberTeamDto>> rows = parts.stream().map(p -> p.rows).collect(Collectors.toList());
+        long total = parts.stream().mapToLong(p -> p.count).sum();
+        return new PageImpl<>(merge(rows, key.comparator(), pageable.getOffset(), pageable.getPageSize()),
+                pageable, total);
+    }
+
+    public MemberKeysetPage searchAfter(MemberSearchCond cond, Long after, int size) {
+        SortKey key = SortKey.ID_ASC;
+        List<List<MemberTeamDto>> parts = shards.fanOut(targets(cond), t -> {
+            MapSqlParameterSource params = new MapSqlParameterSource("limit", size);
+            return t.query(SELECT + where(cond, after, params) + key.orderBy() + " limit :limit", params, ROW);
+        });
+        List<MemberTeamDto> content = merge(parts, key.comparator(), 0, size);
+        Long nextAfter = content.size() < size ? null : content.get(content.size() - 1).getMemberId();
+        return new MemberKeysetPage(content, nextAfter);
+    }
+
+    private List<Integer> targets(MemberSearchCond cond) {
+        if (!StringUtils.hasText(cond.getTeamName())) {
+            return allShards();
+        }
+        Set<Integer> owners = shardsByTeamName.get(cond.getTeamName());
+        return owners == null ? discover(cond.getTeamName()) : owners.stream().sorted().collect(Collectors.toList());
+    }
+
+    // 없는 팀은 등록하지 않으므로 다음에도 다시 물어본다. 나중에 생긴 팀을 놓치지 않기 위해서다
+    private List<Integer> discover(String teamName) {
+        List<Long> counts = shards.fanOut(allShards(), t -> t.queryForObject(
+                "select count(*) from team where name = :name", new MapSqlParameterSource("name", teamName),
+                Long.class));
+        List<Integer> owners = new ArrayList<>();
+        for (int shard = 0; shard < counts.size(); shard++) {
+            Long count = counts.get(shard);
+            if (count != null && count > 0) {
+                register(teamName, shard);
+                owners.add(shard);
+            }
+        }
+        return owners;
+    }
+
+    private List<Integer> allShards() {
+        return IntStream.range(0, shards.size()).boxed().collect(Collectors.toList());
+    }
+
+    private void register(String name, int shard) {
+        if (name != null) {
+            shardsByTeamName.computeIfAbsent(name, k -> ConcurrentHashMap.newKeySet()).add(shard);
+        }
+    }
+
+    private long nextId(int shard) {
+        Long sequence = shards.shard(shard).getJdbcTemplate()
+                .queryForObject("select next value for hibernate_sequence", Long.class);
+        return sequence * shards.size() + shard;
+    }
+
+    private static long count(NamedParameterJdbcTemplate template, String where, MapSqlParameterSource params) {
+        Long count = template.queryForObject(COUNT + where, params, Long.class);
+        return count == null ? 0 : count;
+    }
+
+    /**
+     * 샤드별로 같은 순서로 정렬된 목록을 하나로 병합해 offset 건을 건너뛰고 limit 건을 돌려준다.
+     */
+    static List<MemberTeamDto> merge(List<List<MemberTeamDto>> parts, Comparator<MemberTeamDto> order,
+            long offset, int limit) {
+        PriorityQueue<Cursor> heap = new PriorityQueue<>(Math.max(1, parts.size()),
+                (a, b) -> order.compare(a.current(), b.current()));
+        for (List<MemberTeamDto> part : parts) {
+            if (!part.isEmpty()) {
+                heap.add(new Cursor(part));
+            }
+        }
+        List<MemberTeamDto> result = new ArrayList<>();
+        long skipped = 0;
+        while (!heap.isEmpty() && result.size() < limit) {
+            Cursor cursor = heap.poll();
+            if (skipped < offset) {
+                skipped++;
+            } else {
+                result.add(cursor.current());
+            }
+            if (cursor.advance()) {
+                heap.add(cursor);
+            }
+        }
+        return result;
+    }
+
+    private static String where(MemberSearchCond cond, Long after, MapSqlParameterSource params) {
+        List<String> where = new ArrayList<>();
+        if (StringUtils.hasText(cond.getUsername())) {
+            where.add("m.username = :username");
+            params.addValue("username", cond.getUsername());
+        }
+        if (StringUtils.hasText(cond.getUsernameContains())) {
+            String escaped = cond.getUsernameContains().toLowerCase(Locale.ROOT)
+                    .replace("!", "!!").replace("%", "!%").replace("_", "!_");
+            where.add("lower(m.username) like :usernameContains escape '!'");
+            params.addValue("usernameContains", "%" + escaped + "%");
+        }
+        if (StringUtils.hasText(cond.getTeamName())) {
+            where.add("t.name = :teamName");
+            params.addValue("teamName", cond.getTeamName());
+        }
+        if (cond.getAgeGoe() != null) {
+            where.add("m.age >= :ageGoe");
+            params.addValue("ageGoe", cond.getAgeGoe());
+        }
+        if (cond.getAgeLoe() != null) {
+            where.add("m.age <= :ageLoe");
+            params.addValue("ageLoe", cond.getAgeLoe());
+        }
+        if (after != null) {
+            where.add("m.member_id > :after");
+            params.addValue("after", after);
+        }
+        return where.isEmpty() ? "" : " where " + String.join(" and ", where);
+    }
+
+    /**
+     * SQL order by 와 같은 순서의 Comparator. H2 기본(NULL 이 가장 작음)에 맞춰 null 을 앞에 둔다.
+     */
+    static final class SortKey {
+
+        static final SortKey ID_ASC = new SortKey("m.member_id", null, true);
+
+        private static final Map<String, SortKey> ASC = Map.of(
+                "memberId", ID_ASC,
+                "username", new SortKey("m.username", MemberTeamDto::getUsername, true),
+                "age", new SortKey("m.age", MemberTeamDto::getAge, true));
+
+        private final String column;
+        private final Function<MemberTeamDto, ? extends Comparable<?>> getter;
+        private final boolean ascending;
+
+        private SortKey(String column, Function<MemberTeamDto, ? extends Comparable<?>> getter, boolean ascending) {
+            this.column = column;
+            this.getter = getter;
+            this.ascending = ascending;
+        }
+
+        static SortKey of(Sort sort) {
+            for (Sort.Order order : sort) {
+                SortKey key = ASC.get(order.getProperty());
+                if (key != null) {
+                    return order.isAscending() ? key : new SortKey(key.column, key.getter, false);
+                }
+            }
+            return ID_ASC;
+        }
+
+        String orderBy() {
+            String direction = ascending ? " asc" : " desc";
+            return getter == null
+                    ? " order by m.member_id" + direction
+                    : " order by " + column + direction + ", m.member_id" + direction;
+        }
+
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        Comparator<MemberTeamDto> comparator() {
+            Comparator<MemberTeamDto> byId = Comparator.comparing(MemberTeamDto::getMemberId);
+            Comparator<MemberTeamDto> order = getter == null
+                    ? byId
+                    : Comparator.comparing((Function) getter, Comparator.nullsFirst(Comparator.naturalOrder()))
+                            .thenComparing(byId);
+            return ascending ? order : order.reversed();
+        }
+    }
+
+    // 샤드별로 BACKFILL_BATCH 건씩 모아 batchUpdate 한다
+    private final class ShardBatches {
+
+        private final String sql;
+        private final List<List<MapSqlParameterSource>> pending = new ArrayList<>();
+        private long rows;
+
+        ShardBatches(String sql) {
+            this.sql = sql;
+            for (int i = 0; i < shards.size(); i++) {
+                pending.add(new ArrayList<>());
+            }
+        }
+
+        void add(int shard, MapSqlParameterSource row) {
+            List<MapSqlParameterSource> batch = pending.get(shard);
+            batch.add(row);
+            rows++;
+            if (batch.size() >= BACKFILL_BATCH) {
+                flush(shard);
+            }
+        }
+
+        void flush() {
+            for (int shard = 0; shard < pending.size(); shard++) {
+                flush(shard);
+            }
+        }
+
+        private void flush(int shard) {
+            List<MapSqlParameterSource> batch = pending.get(shard);
+            if (!batch.isEmpty()) {
+                shards.shard(shard).batchUpdate(sql, batch.toArray(new MapSqlParameterSource[0]));
+                batch.clear();
+            }
+        }
+    }
+
+    private static final class ShardPage {
+
+        private final List<MemberTeamDto> rows;
+        private final long count;
+
+        ShardPage(List<MemberTeamDto> rows, long count) {
+            this.rows = rows;
+            this.count = count;
+        }
+    }
+
+    private static final class Cursor {
+
+        private final List<MemberTeamDto> rows;
+        private int index;
+
+        Cursor(List<MemberTeamDto> rows) {
+            this.rows = rows;
+        }
+
+        MemberTeamDto current() {
+            return rows.get(index);
+        }
+
+        boolean advance() {
+            return ++index < rows.size();
+        }
+    }
+}
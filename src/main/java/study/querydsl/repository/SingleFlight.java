@@ -0,0 +1,111 @@
+package study.querydsl.repository;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * 같은 키로 동시에 들어온 호출을 하나의 실행으로 합친다.
+ * 먼저 들어온 호출(leader)만 loader 를 실행하고, 나머지는 그 결과를 공유한다.
+ * ttl 이 0 보다 크면 완료된 결과를 ttl 동안 재사용한다.
+ */
+public class SingleFlight<K, V> {
+
+    public enum Outcome {
+        LEADER, JOINED, CACHED
+    }
+
+    public interface Listener {
+        void onOutcome(Outcome outcome);
+    }
+
+    private final ConcurrentHashMap<K, Flight<V>> flights = new ConcurrentHashMap<>();
+    private final long ttlNanos;
+
+    public SingleFlight(long ttlMillis) {
+        this.ttlNanos = Math.max(0, ttlMillis) * 1_000_000L;
+    }
+
+    public V execute(K key, Supplier<V> loader, Listener listener) {
+        while (true) {
+            Flight<V> mine = new Flight<>();
+            Flight<V> existing = flights.putIfAbsent(key, mine);
+
+            if (existing == null) {
+                listener.onOutcome(Outcome.LEADER);
+                return lead(key, mine, loader);
+            }
+            if (existing.isExpired(System.nanoTime())) {
+                flights.remove(key, existing);
+                continue;
+            }
+            listener.onOutcome(existing.isDone() ? Outcome.CACHED : Outcome.JOINED);
+            return existing.await();
+        }
+    }
+
+    // 진행 중인 실행은 두고 ttl 로 보관 중인 결과만 버린다
+    public void clearCompleted() {
+        flights.values().removeIf(Flight::isDone);
+    }
+
+    public int size() {
+        return flights.size();
+    }
+
+    private V lead(K key, Flight<V> mine, Supplier<V> loader) {
+        V value;
+        try {
+            value = loader.get();
+        } catch (RuntimeException | Error e) {
+            // 실패한 결과는 재사용하지 않는다. 기다리던 호출에만 전파
+            flights.remove(key, mine);
+            mine.future.completeExceptionally(e);
+            throw e;
+        }
+
+        if (ttlNanos == 0) {
+            flights.remove(key, mine);
+        } else {
+            mine.expiresAt = System.nanoTime() + ttlNanos;
+            evictExpired();
+        }
+        mine.future.complete(value);
+        return value;
+    }
+
+    private void evictExpired() {
+        long now = System.nanoTime();
+        flights.values().removeIf(flight -> flight.isExpired(now));
+    }
+
+    private static class Flight<V> {
+
+        private final CompletableFuture<V> future = new CompletableFuture<>();
+        private volatile long expiresAt = Long.MAX_VALUE;
+
+        boolean isDone() {
+            return future.isDone();
+        }
+
+        boolean isExpired(long now) {
+            return expiresAt != Long.MAX_VALUE && now - expiresAt > 0;
+        }
+
+        V await() {
+            try {
+                return future.join();
+            } catch (CompletionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw e;
+            }
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package study.querydsl.repository;
+
+import com.p6spy.engine.common.PreparedStatementInformation;
+import com.p6spy.engine.common.StatementInformation;
+import com.p6spy.engine.event.JdbcEventListener;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.regex.Pattern;
+import javax.annotation.PreDestroy;
+import javax.sql.DataSource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import study.querydsl.dto.SlowQuery;
+
+/**
+ * p6spy 리스너로 임계치를 넘은 SQL 을 최근 capacity 건까지 링 버퍼에 남긴다.
+ * 빈으로 등록하면 p6spy-spring-boot-starter 가 알아서 리스너로 붙인다.
+ * select 는 별도 커넥션에서 EXPLAIN 을 비동기로 돌려 plan 을 채운다. 대기열이 차면 EXPLAIN 은 건너뛴다.
+ * EXPLAIN 은 원래 SQL 을 PreparedStatement 로 만들고 실행 때 바인딩된 값을 그대로 다시 바인딩한다.
+ * 보관하는 sqlWithValues 는 문자열/숫자 리터럴을 가린다.
+ * DataSource 는 이 리스너를 붙여서 만들어지므로 ObjectProvider 로 늦게 가져온다.
+ */
+@Slf4j
+@Component
+public class SlowQueryRecorder extends JdbcEventListener {
+
+    private static final Pattern STRING_LITERAL = Pattern.compile("'(?:[^']|'')*'");
+    private static final Pattern NUMERIC_LITERAL = Pattern.compile("\\b\\d+(?:\\.\\d+)?\\b");
+
+    private final ObjectProvider<DataSource> dataSource;
+    private final long thresholdNanos;
+    private final boolean explain;
+    private final AtomicReferenceArray<SlowQuery> slots;
+    private final AtomicLong sequence = new AtomicLong();
+    private final ThreadPoolExecutor explainer;
+    // set 직후 같은 스레드에서 execute 되므로 스레드마다 마지막 PreparedStatement 의 값만 들고 있는다
+    private final ThreadLocal<BoundValues> boundValues = ThreadLocal.withInitial(BoundValues::new);
+
+    public SlowQueryRecorder(ObjectProvider<DataSource> dataSource,
+            @Value("${jdbc.slow-query.threshold-ms:200}") long thresholdMillis,
+            @Value("${jdbc.slow-query.capacity:100}") int capacity,
+            @Value("${jdbc.slow-query.explain:true}") boolean explain) {
+        this.dataSource = dataSource;
+        this.thresholdNanos = TimeUnit.MILLISECONDS.toNanos(thresholdMillis);
+        this.explain = explain;
+        this.slots = new AtomicReferenceArray<>(capacity);
+        this.explainer = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(16),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "slow-query-explain");
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.DiscardPolicy());
+    }
+
+    @Override
+    public void onAfterPreparedStatementSet(PreparedStatementInformation statementInformation, int parameterIndex,
+            Object value, SQLException e) {
+        if (explain) {
+            boundValues.get().set(statementInformation, parameterIndex, value);
+        }
+    }
+
+    @Override
+    public void onAfterAnyExecute(StatementInformation statementInformation, long timeElapsedNanos, SQLException e) {
+        if (timeElapsedNanos < thresholdNanos) {
+            return;
+        }
+        String sql = statementInformation.getSql();
+        if (sql == null || startsWith(sql, "explain")) {
+            return;
+        }
+        String sqlWithValues = statementInformation.getSqlWithValues();
+        SlowQuery entry = record(sql, sqlWithValues, timeElapsedNanos, e);
+        if (explain && (startsWith(sql, "select") || startsWith(sql, "with"))) {
+            List<Object> values = boundValues.get().of(statementInformation);
+            explainer.execute(() -> explain(entry, values));
+        }
+    }
+
+    /**
+     * 최근 기록부터 돌려준다.
+     */
+    public List<SlowQuery> recent() {
+        List<SlowQuery> result = new ArrayList<>();
+        long last = sequence.get();
+        for (long seq = last; seq > 0 && seq > last - slots.length(); seq--) {
+            SlowQuery entry = slots.get(slot(seq));
+            // 읽는 사이 덮어쓰인 칸은 건너뛴다
+            if (entry != null && entry.getSequence() == seq) {
+                result.add(entry);
+            }
+        }
+        return result;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        explainer.shutdownNow();
+    }
+
+    SlowQuery record(String sql, String sqlWithValues, long elapsedNanos, SQLException e) {
+        long seq = sequence.incrementAndGet();
+        SlowQuery entry = new SlowQuery(seq, Instant.now(), TimeUnit.NANOSECONDS.toMillis(elapsedNanos), source(),
+                sql, redact(sqlWithValues), e == null ? null : e.getMessage(), null);
+        slots.set(slot(seq), entry);
+        return entry;
+    }
+
+    // EXPLAIN 에는 실제 값을 바인딩하고, 보관하는 건 plan 뿐이다
+    private void explain(SlowQuery entry, List<Object> values) {
+        String plan;
+        try (Connection connection = dataSource.getObject().getConnection();
+                PreparedStatement statement = connection.prepareStatement("EXPLAIN " + entry.getSql())) {
+            connection.setReadOnly(true);
+            for (int i = 0; i < values.size(); i++) {
+                statement.setObject(i + 1, values.get(i));
+            }
+            try (ResultSet rs = statement.executeQuery()) {
+                StringBuilder builder = new StringBuilder();
+                while (rs.next()) {
+                    builder.append(rs.getString(1)).append('\n');
+                }
+                plan = builder.toString();
+            }
+        } catch (SQLException | RuntimeException e) {
+            log.debug("explain failed. sql={}", entry.getSql(), e);
+            plan = "EXPLAIN failed: " + e.getMessage();
+        }
+        slots.compareAndSet(slot(entry.getSequence()), entry, entry.withPlan(plan));
+    }
+
+    private int slot(long seq) {
+        return (int) ((seq - 1) % slots.length());
+    }
+
+    // 문자열을 먼저 가려야 문자열 안의 숫자가 따로 남지 않는다. 식별자 안의 숫자(member0_)는 건드리지 않는다
+    static String redact(String sqlWithValues) {
+        if (sqlWithValues == null) {
+            return null;
+        }
+        String masked = STRING_LITERAL.matcher(sqlWithValues).replaceAll("'***'");
+        return NUMERIC_LITERAL.matcher(masked).replaceAll("***");
+    }
+
+    private static boolean startsWith(String sql, String keyword) {
+        String trimmed = sql.stripLeading();
+        return trimmed.regionMatches(true, 0, keyword, 0, keyword.length());
+    }
+
+    // 어느 요청에서 나온 쿼리인지. 쿼리스트링은 값이 들어 있으므로 남기지 않는다
+    private static String source() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes instanceof ServletRequestAttributes) {
+            ServletRequestAttributes servlet = (ServletRequestAttributes) attributes;
+            return servlet.getRequest().getMethod() + " " + servlet.getRequest().getRequestURI();
+        }
+        return Thread.currentThread().getName();
+    }
+
+    private static final class BoundValues {
+
+        private StatementInformation owner;
+        private final List<Object> values = new ArrayList<>();
+
+        void set(StatementInformation statement, int parameterIndex, Object value) {
+            if (owner != statement) {
+                owner = statement;
+                values.clear();
+            }
+            while (values.size() < parameterIndex) {
+                values.add(null);
+            }
+            values.set(parameterIndex - 1, value);
+        }
+
+        // 다른 문장의 값이면 쓰지 않는다. 값이 모자라면 EXPLAIN 이 실패로 남는다
+        List<Object> of(StatementInformation statement) {
+            return owner == statement ? new ArrayList<>(values) : List.of();
+        }
+    }
+}
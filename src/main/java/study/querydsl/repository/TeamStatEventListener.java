@@ -0,0 +1,155 @@
+package study.querydsl.repository;
+
+import java.sql.PreparedStatement;
+import java.sql.Types;
+import java.util.Objects;
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManagerFactory;
+import lombok.RequiredArgsConstructor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventSource;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostDeleteEventListener;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostInsertEventListener;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.event.spi.PostUpdateEventListener;
+import org.hibernate.internal.SessionFactoryImpl;
+import org.hibernate.persister.entity.EntityPersister;
+import org.hibernate.proxy.HibernateProxy;
+import org.springframework.stereotype.Component;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+/**
+ * Member 의 생성/팀 변경/나이 변경/삭제를 team_stat 에 증분 반영한다.
+ * 같은 트랜잭션의 커넥션에서 "col = col + ?" 형태로 갱신하므로 동시 갱신에도 row lock 으로 직렬화된다.
+ * 벌크 연산(execute())은 이벤트를 타지 않으니 TeamStatReconciler 로 보정한다.
+ */
+@Component
+@RequiredArgsConstructor
+public class TeamStatEventListener implements PostInsertEventListener, PostUpdateEventListener,
+        PostDeleteEventListener {
+
+    private static final String INSERT_STAT =
+            "insert into team_stat (team_id, member_count, age_sum) values (?, 0, 0)";
+    private static final String DELETE_STAT = "delete from team_stat where team_id = ?";
+    private static final String ADD_MEMBER =
+            "update team_stat set member_count = member_count + 1, age_sum = age_sum + ?,"
+                    + " age_min = least(coalesce(age_min, ?), ?), age_max = greatest(coalesce(age_max, ?), ?)"
+                    + " where team_id = ?";
+    private static final String REMOVE_MEMBER =
+            "update team_stat set member_count = member_count - 1, age_sum = age_sum - ? where team_id = ?";
+    // 최소/최대값을 가진 멤버가 빠졌을 때만 해당 팀을 다시 계산한다. 배치로 아직 delete 가 안 나갔을 수 있어 id 로 제외
+    private static final String RECOMPUTE_MIN_MAX =
+            "update team_stat set"
+                    + " age_min = (select min(m.age) from member m where m.team_id = ? and m.member_id <> ?),"
+                    + " age_max = (select max(m.age) from member m where m.team_id = ? and m.member_id <> ?)"
+                    + " where team_id = ? and (age_min = ? or age_max = ?)";
+
+    private final EntityManagerFactory emf;
+
+    @PostConstruct
+    void register() {
+        EventListenerRegistry registry = emf.unwrap(SessionFactoryImpl.class)
+                .getServiceRegistry()
+                .getService(EventListenerRegistry.class);
+        registry.appendListeners(EventType.POST_INSERT, this);
+        registry.appendListeners(EventType.POST_UPDATE, this);
+        registry.appendListeners(EventType.POST_DELETE, this);
+    }
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        Object entity = event.getEntity();
+        if (entity instanceof Team) {
+            execute(event.getSession(), INSERT_STAT, ((Team) entity).getId());
+        } else if (entity instanceof Member) {
+            Member member = (Member) entity;
+            addMember(event.getSession(), teamId(member.getTeam()), member.getAge());
+        }
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        if (!(event.getEntity() instanceof Member) || event.getOldState() == null) {
+            return;
+        }
+        EntityPersister persister = event.getPersister();
+        int teamIndex = persister.getEntityMetamodel().getPropertyIndex("team");
+        int ageIndex = persister.getEntityMetamodel().getPropertyIndex("age");
+
+        Long oldTeamId = teamId(event.getOldState()[teamIndex]);
+        Long newTeamId = teamId(event.getState()[teamIndex]);
+        int oldAge = (Integer) event.getOldState()[ageIndex];
+        int newAge = (Integer) event.getState()[ageIndex];
+        if (Objects.equals(oldTeamId, newTeamId) && oldAge == newAge) {
+            return;
+        }
+
+        Long memberId = (Long) event.getId();
+        removeMember(event.getSession(), oldTeamId, memberId, oldAge);
+        addMember(event.getSession(), newTeamId, newAge);
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        Object entity = event.getEntity();
+        if (entity instanceof Team) {
+            execute(event.getSession(), DELETE_STAT, event.getId());
+        } else if (entity instanceof Member && event.getDeletedState() != null) {
+            // 같은 flush 에서 고친 뒤 지웠으면 엔티티 값은 DB 와 다르다. 삭제 시점의 로드 상태로 뺀다
+            EntityPersister persister = event.getPersister();
+            int teamIndex = persister.getEntityMetamodel().getPropertyIndex("team");
+            int ageIndex = persister.getEntityMetamodel().getPropertyIndex("age");
+            Object[] state = event.getDeletedState();
+            removeMember(event.getSession(), teamId(state[teamIndex]), (Long) event.getId(),
+                    (Integer) state[ageIndex]);
+        }
+    }
+
+    @Override
+    public boolean requiresPostCommitHanding(EntityPersister persister) {
+        return false;
+    }
+
+    private void addMember(EventSource session, Long teamId, int age) {
+        if (teamId != null) {
+            execute(session, ADD_MEMBER, age, age, age, age, age, teamId);
+        }
+    }
+
+    private void removeMember(EventSource session, Long teamId, Long memberId, int age) {
+        if (teamId != null) {
+            execute(session, REMOVE_MEMBER, age, teamId);
+            execute(session, RECOMPUTE_MIN_MAX, teamId, memberId, teamId, memberId, teamId, age, age);
+        }
+    }
+
+    private static void execute(EventSource session, String sql, Object... params) {
+        session.doWork(connection -> {
+            try (PreparedStatement ps = connection.prepareStatement(sql)) {
+                for (int i = 0; i < params.length; i++) {
+                    if (params[i] == null) {
+                        ps.setNull(i + 1, Types.BIGINT);
+                    } else {
+                        ps.setObject(i + 1, params[i]);
+                    }
+                }
+                ps.executeUpdate();
+            }
+        });
+    }
+
+    // 프록시를 초기화하지 않고 id 만 꺼낸다
+    static Long teamId(Object team) {
+        if (team == null) {
+            return null;
+        }
+        if (team instanceof HibernateProxy) {
+            return (Long) ((HibernateProxy) team).getHibernateLazyInitializer().getIdentifier();
+        }
+        return ((Team) team).getId();
+    }
+}
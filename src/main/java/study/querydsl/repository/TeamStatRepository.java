@@ -0,0 +1,8 @@
+package study.querydsl.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import study.querydsl.entity.TeamStat;
+
+public interface TeamStatRepository extends JpaRepository<TeamStat, Long>, TeamStatRepositoryCustom {
+
+}
@@ -0,0 +1,12 @@
+package study.querydsl.repository;
+
+import java.util.List;
+import java.util.Optional;
+import study.querydsl.dto.TeamStatDto;
+
+public interface TeamStatRepositoryCustom {
+
+    List<TeamStatDto> findTeamStats();
+    Optional<TeamStatDto> findTeamStat(Long teamId);
+
+}
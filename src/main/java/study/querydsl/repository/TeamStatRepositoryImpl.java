@@ -0,0 +1,50 @@
+package study.querydsl.repository;
+
+import static study.querydsl.entity.QTeam.team;
+import static study.querydsl.entity.QTeamStat.teamStat;
+
+import com.querydsl.jpa.impl.JPAQuery;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import java.util.List;
+import java.util.Optional;
+import javax.persistence.EntityManager;
+import study.querydsl.dto.QTeamStatDto;
+import study.querydsl.dto.TeamStatDto;
+
+public class TeamStatRepositoryImpl implements TeamStatRepositoryCustom {
+
+    private final JPAQueryFactory queryFactory;
+
+    public TeamStatRepositoryImpl(EntityManager em) {
+        this.queryFactory = new JPAQueryFactory(em);
+    }
+
+    // member 를 스캔하지 않고 팀 수만큼의 row 만 읽는다
+    @Override
+    public List<TeamStatDto> findTeamStats() {
+        return selectTeamStat()
+                .orderBy(team.name.asc())
+                .fetch();
+    }
+
+    @Override
+    public Optional<TeamStatDto> findTeamStat(Long teamId) {
+        return Optional.ofNullable(selectTeamStat()
+                .where(teamStat.teamId.eq(teamId))
+                .fetchOne());
+    }
+
+    private JPAQuery<TeamStatDto> selectTeamStat() {
+        return queryFactory
+                .select(new QTeamStatDto(
+                        team.id,
+                        team.name,
+                        teamStat.memberCount,
+                        teamStat.ageSum,
+                        teamStat.ageMin,
+                        teamStat.ageMax))
+                .from(teamStat)
+                .join(team).on(team.id.eq(teamStat.teamId));
+    }
+
+}
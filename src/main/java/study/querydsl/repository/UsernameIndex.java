@@ -0,0 +1,287 @@
+package study.querydsl.repository;
+
+import static study.querydsl.entity.QMember.member;
+
+import com.querydsl.core.Tuple;
+import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import javax.annotation.PreDestroy;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.StringUtils;
+import study.querydsl.repository.MemberChangeEvent.Kind;
+import study.querydsl.repository.MemberChangeEvent.Target;
+
+/**
+ * Member.username 부분 일치 검색용 trigram 역색인.
+ * like '%x%' 는 인덱스를 못 타서 풀스캔이 되므로, 여기서 member id 를 먼저 찾고 DB 는 id in (...) 으로만 조회한다.
+ * 검색어의 trigram 중 가장 짧은 posting 만 후보로 보고 실제 username 으로 다시 확인한다.
+ * 3글자 미만이거나 결과가 MAX_IDS 를 넘으면 쓰지 않는다. 그만큼 긴 in (...) 은 크기마다 plan 이 새로 생기고 파라미터 한도도 넘을 수 있다.
+ * posting 이 member 수 x trigram 수만큼의 Long 이라 메모리가 크므로 기본은 꺼져 있다.
+ * invalidate 되면 rebuild-delay-ms 뒤에 별도 스레드에서 다시 만든다.
+ */
+@Slf4j
+@Component
+public class UsernameIndex implements MemberChangeSubscriber {
+
+    private static final int GRAM = 3;
+    static final int MAX_IDS = 1000;
+
+    private final JPAQueryFactory queryFactory;
+    private final TransactionTemplate reloadTx;
+    private final boolean enabled;
+    private final DebouncedRebuild rebuilder;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, Set<Long>> postings = new HashMap<>();
+    private final Map<Long, String> usernames = new HashMap<>();
+    private final List<Runnable> replay = new ArrayList<>();
+    private boolean rebuilding;
+    private volatile boolean ready;
+    // rebuild 가 읽는 동안 invalidate 되면 그 결과로 ready 가 되면 안 된다
+    private long invalidations;
+
+    public UsernameIndex(JPAQueryFactory queryFactory, PlatformTransactionManager transactionManager,
+            @Value("${member.search.username-index.enabled:false}") boolean enabled,
+            @Value("${member.search.username-index.rebuild-delay-ms:1000}") long rebuildDelayMillis) {
+        this.queryFactory = queryFactory;
+        this.reloadTx = IndexSync.reloadTransaction(transactionManager);
+        this.enabled = enabled;
+        this.rebuilder = new DebouncedRebuild("username-index", rebuildDelayMillis, this::isReady,
+                () -> reloadTx.executeWithoutResult(status -> rebuild()));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        rebuilder.shutdown();
+    }
+
+    public boolean isReady() {
+        return enabled && ready;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void rebuild() {
+        if (!enabled) {
+            return;
+        }
+        long generation;
+        lock.writeLock().lock();
+        try {
+            rebuilding = true;
+            replay.clear();
+            generation = invalidations;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        long start = System.nanoTime();
+
+        Map<Long, String> loaded = new HashMap<>();
+        for (Tuple tuple : queryFactory.select(member.id, member.username).from(member).fetch()) {
+            loaded.put(tuple.get(member.id), tuple.get(member.username));
+        }
+        load(loaded, generation);
+        log.info("username index built. members={}, grams={}, {}ms",
+                loaded.size(), postings.size(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    void load(Map<Long, String> loaded) {
+        load(loaded, invalidations);
+    }
+
+    private void load(Map<Long, String> loaded, long generation) {
+        lock.writeLock().lock();
+        try {
+            postings.clear();
+            usernames.clear();
+            loaded.forEach(this::put);
+            // 읽는 동안 커밋된 변경을 다시 반영한다
+            replay.forEach(Runnable::run);
+            replay.clear();
+            rebuilding = false;
+            // 그 사이 invalidate 됐으면 이미 다음 rebuild 가 예약돼 있다
+            ready = generation == invalidations;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void invalidate() {
+        if (!enabled) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            invalidations++;
+            ready = false;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        rebuilder.request();
+    }
+
+    /**
+     * usernameContains 조건. 색인으로 찾은 id 가 있으면 id in (...), 색인을 못 쓰면 like '%x%'. term 이 비면 null.
+     */
+    public BooleanExpression usernameContains(String term) {
+        if (!StringUtils.hasText(term)) {
+            return null;
+        }
+        List<Long> ids = findIdsContaining(term);
+        if (ids == null) {
+            return member.username.containsIgnoreCase(term);
+        }
+        // ids 는 MAX_IDS 이하라 chunk 는 하나다. 크기를 2의 거듭제곱으로 맞춰 plan 수를 줄인다
+        return ids.isEmpty() ? member.id.in(ids) : member.id.in(MemberJpaRepository.chunks(ids, MAX_IDS).get(0));
+    }
+
+    /**
+     * username 에 term 이 포함된(대소문자 무시) member id 를 오름차순으로 돌려준다.
+     * 인덱스를 쓸 수 없으면(비활성, 빌드 전, 쓰기 트랜잭션 안, 3글자 미만, MAX_IDS 초과) null 이고, 호출자는 DB like 로 조회해야 한다.
+     */
+    public List<Long> findIdsContaining(String term) {
+        if (!isReady() || IndexSync.inReadWriteTransaction() || term.length() < GRAM) {
+            return null;
+        }
+        String needle = term.toLowerCase(Locale.ROOT);
+        lock.readLock().lock();
+        try {
+            List<Long> result = new ArrayList<>();
+            for (Long id : smallestPosting(needle)) {
+                if (usernames.get(id).contains(needle)) {
+                    if (result.size() == MAX_IDS) {
+                        return null;
+                    }
+                    result.add(id);
+                }
+            }
+            Collections.sort(result);
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // 벌크 연산으로 바뀐 member 만 다시 읽는다. 엔티티 단위 변경은 MemberIndexListener 가 직접 넘겨준다
+    // afterCommit 에서 불리므로 새 읽기 전용 트랜잭션에서 읽는다
+    @Override
+    public void onChange(MemberChangeEvent event) {
+        if (!enabled || !event.isBulk() || event.getTarget() != Target.MEMBER) {
+            return;
+        }
+        if (!event.isIdsKnown()) {
+            invalidate();
+            return;
+        }
+        List<Long> ids = event.getIds();
+        Map<Long, String> reloaded = new HashMap<>();
+        if (event.getKind() != Kind.BULK_DELETED) {
+            reloadTx.executeWithoutResult(status -> {
+                for (Tuple tuple : queryFactory.select(member.id, member.username)
+                        .from(member)
+                        .where(member.id.in(ids))
+                        .fetch()) {
+                    reloaded.put(tuple.get(member.id), tuple.get(member.username));
+                }
+            });
+        }
+        write(() -> {
+            ids.forEach(this::remove);
+            reloaded.forEach(this::put);
+        });
+    }
+
+    void memberSaved(Long id, String username) {
+        if (enabled) {
+            IndexSync.afterCommit(() -> write(() -> {
+                remove(id);
+                put(id, username);
+            }));
+        }
+    }
+
+    void memberRemoved(Long id) {
+        if (enabled) {
+            IndexSync.afterCommit(() -> write(() -> remove(id)));
+        }
+    }
+
+    private void write(Runnable change) {
+        lock.writeLock().lock();
+        try {
+            change.run();
+            if (rebuilding) {
+                replay.add(change);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private Collection<Long> smallestPosting(String needle) {
+        Set<Long> smallest = null;
+        for (String gram : grams(needle)) {
+            Set<Long> posting = postings.get(gram);
+            if (posting == null) {
+                return Collections.emptySet();
+            }
+            if (smallest == null || posting.size() < smallest.size()) {
+                smallest = posting;
+            }
+        }
+        return smallest;
+    }
+
+    private void put(Long id, String username) {
+        if (username == null) {
+            return;
+        }
+        String normalized = username.toLowerCase(Locale.ROOT);
+        usernames.put(id, normalized);
+        for (String gram : grams(normalized)) {
+            postings.computeIfAbsent(gram, k -> new HashSet<>()).add(id);
+        }
+    }
+
+    private void remove(Long id) {
+        String old = usernames.remove(id);
+        if (old == null) {
+            return;
+        }
+        for (String gram : grams(old)) {
+            Set<Long> posting = postings.get(gram);
+            if (posting != null) {
+                posting.remove(id);
+                if (posting.isEmpty()) {
+                    postings.remove(gram);
+                }
+            }
+        }
+    }
+
+    private static Set<String> grams(String value) {
+        Set<String> grams = new HashSet<>();
+        for (int i = 0; i + GRAM <= value.length(); i++) {
+            grams.add(value.substring(i, i + GRAM));
+        }
+        return grams;
+    }
+}
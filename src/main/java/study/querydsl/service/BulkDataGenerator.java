@@ -0,0 +1,74 @@
+package study.querydsl.service;
+
+import java.util.Arrays;
+import java.util.Random;
+import study.querydsl.dto.BulkLoadSpec;
+
+/**
+ * BulkLoadSpec 의 분포대로 팀 번호와 나이를 뽑는다. 상태가 없어 여러 스레드에서 같이 쓸 수 있고,
+ * 같은 seed 의 Random 을 넘기면 같은 결과가 나온다.
+ */
+public class BulkDataGenerator {
+
+    private final double[] teamCdf;
+    private final int[] ageFrom;
+    private final int[] ageTo;
+    private final double[] ageCdf;
+
+    public BulkDataGenerator(BulkLoadSpec spec) {
+        if (spec.getTeams() <= 0) {
+            throw new IllegalArgumentException("teams must be positive");
+        }
+        teamCdf = new double[spec.getTeams()];
+        double sum = 0;
+        for (int k = 0; k < teamCdf.length; k++) {
+            sum += 1 / Math.pow(k + 1, spec.getTeamSkew());
+            teamCdf[k] = sum;
+        }
+        normalize(teamCdf);
+
+        String[] buckets = spec.getAgeHistogram().split(",");
+        ageFrom = new int[buckets.length];
+        ageTo = new int[buckets.length];
+        ageCdf = new double[buckets.length];
+        sum = 0;
+        for (int i = 0; i < buckets.length; i++) {
+            String[] rangeAndWeight = buckets[i].trim().split(":");
+            String[] range = rangeAndWeight[0].split("-");
+            ageFrom[i] = Integer.parseInt(range[0].trim());
+            ageTo[i] = Integer.parseInt(range[1].trim());
+            if (ageFrom[i] > ageTo[i]) {
+                throw new IllegalArgumentException("invalid age bucket: " + buckets[i]);
+            }
+            sum += Double.parseDouble(rangeAndWeight[1].trim());
+            ageCdf[i] = sum;
+        }
+        normalize(ageCdf);
+    }
+
+    // 0 부터 teams - 1 사이의 팀 번호
+    public int nextTeam(Random random) {
+        return pick(teamCdf, random.nextDouble());
+    }
+
+    public int nextAge(Random random) {
+        int bucket = pick(ageCdf, random.nextDouble());
+        return ageFrom[bucket] + random.nextInt(ageTo[bucket] - ageFrom[bucket] + 1);
+    }
+
+    private static int pick(double[] cdf, double value) {
+        int index = Arrays.binarySearch(cdf, value);
+        index = index >= 0 ? index : -index - 1;
+        return Math.min(index, cdf.length - 1);
+    }
+
+    private static void normalize(double[] cdf) {
+        double total = cdf[cdf.length - 1];
+        if (total <= 0) {
+            throw new IllegalArgumentException("weights must be positive");
+        }
+        for (int i = 0; i < cdf.length; i++) {
+            cdf[i] /= total;
+        }
+    }
+}
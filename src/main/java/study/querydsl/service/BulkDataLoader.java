@@ -0,0 +1,229 @@
+package study.querydsl.service;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import study.querydsl.dto.BulkLoadSpec;
+import study.querydsl.repository.MemberChangeEvent.Kind;
+import study.querydsl.repository.MemberChangeEvent.Target;
+import study.querydsl.repository.MemberChangeFeed;
+import study.querydsl.repository.MemberSearchIndex;
+import study.querydsl.repository.UsernameIndex;
+
+/**
+ * 성능 테스트용으로 Member/Team 을 대량 적재한다. 기존 member/team 은 지우고 다시 채운다.
+ * 엔티티/영속성 컨텍스트를 거치지 않고 JDBC batch 로 넣으며, member 는 chunk 단위로 나눠 여러 스레드가 각자 커넥션으로 넣는다.
+ * id 는 hibernate_sequence 에서 한 구간을 잡아 쓰고, 끝나면 시퀀스를 그 뒤로 옮긴다. 적재 중 다른 쓰기는 없다고 가정한다.
+ */
+@Slf4j
+@Profile("perf")
+@Service
+@RequiredArgsConstructor
+public class BulkDataLoader {
+
+    private static final String INSERT_TEAM = "insert into team (id, name, version) values (?, ?, 0)";
+    private static final String INSERT_MEMBER = "insert into member (member_id, username, age, team_id, version) values (?, ?, ?, ?, 0)";
+    // 리스너를 거치지 않으므로 team_stat 은 적재 후 한 번에 계산한다
+    private static final String INSERT_TEAM_STAT = "insert into team_stat (team_id, member_count, age_sum, age_min, age_max)"
+            + " select t.id, count(m.member_id), coalesce(sum(m.age), 0), min(m.age), max(m.age)"
+            + " from team t left join member m on m.team_id = t.id group by t.id";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final MemberSearchIndex memberSearchIndex;
+    private final UsernameIndex usernameIndex;
+    private final MemberChangeFeed changeFeed;
+
+    private volatile Progress progress;
+
+    public Progress getProgress() {
+        return progress;
+    }
+
+    /**
+     * 적재를 백그라운드로 시작한다. spec 이 잘못되면 IllegalArgumentException, 이미 적재 중이면 IllegalStateException.
+     */
+    public synchronized Progress start(BulkLoadSpec spec) {
+        if (progress != null && progress.isRunning()) {
+            throw new IllegalStateException("bulk load is already running");
+        }
+        validate(spec);
+        BulkDataGenerator generator = new BulkDataGenerator(spec);
+        Progress started = new Progress(spec.getMembers());
+        progress = started;
+
+        Thread thread = new Thread(() -> load(spec, generator, started), "bulk-load");
+        thread.setDaemon(true);
+        thread.start();
+        return started;
+    }
+
+    // chunkSize/batchSize 가 0 이하면 적재 루프가 끝나지 않는다
+    private static void validate(BulkLoadSpec spec) {
+        requirePositive("members", spec.getMembers());
+        requirePositive("teams", spec.getTeams());
+        requirePositive("chunkSize", spec.getChunkSize());
+        requirePositive("batchSize", spec.getBatchSize());
+        requirePositive("threads", spec.getThreads());
+    }
+
+    private static void requirePositive(String name, long value) {
+        if (value <= 0) {
+            throw new IllegalArgumentException(name + " must be positive: " + value);
+        }
+    }
+
+    private void load(BulkLoadSpec spec, BulkDataGenerator generator, Progress progress) {
+        ExecutorService executor = Executors.newFixedThreadPool(spec.getThreads());
+        try {
+            clear();
+            long base = jdbcTemplate.queryForObject("select next value for hibernate_sequence", Long.class);
+            long firstTeamId = base + 1;
+            long firstMemberId = firstTeamId + spec.getTeams();
+            insertTeams(spec, firstTeamId);
+
+            List<Future<?>> futures = new ArrayList<>();
+            for (long from = 0; from < spec.getMembers(); from += spec.getChunkSize()) {
+                long chunkFrom = from;
+                long chunkTo = Math.min(from + spec.getChunkSize(), spec.getMembers());
+                futures.add(executor.submit(() -> insertMembers(spec, generator, progress, firstTeamId,
+                        firstMemberId, chunkFrom, chunkTo)));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+
+            jdbcTemplate.update(INSERT_TEAM_STAT);
+            jdbcTemplate.execute("alter sequence hibernate_sequence restart with "
+                    + (firstMemberId + spec.getMembers()));
+            // JDBC 로 넣었으므로 직접 알린다. 구독자가 무효화한 뒤에 인덱스를 다시 만든다
+            changeFeed.record(Target.TEAM, Kind.BULK_UPDATED, null, "bulk load");
+            changeFeed.record(Target.MEMBER, Kind.BULK_UPDATED, null, "bulk load");
+            memberSearchIndex.rebuild();
+            usernameIndex.rebuild();
+            progress.finish(null);
+            log.info("bulk load done. members={}, teams={}, {}ms",
+                    spec.getMembers(), spec.getTeams(), progress.getElapsedMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            progress.finish(e);
+        } catch (ExecutionException e) {
+            log.error("bulk load failed", e.getCause());
+            progress.finish(e.getCause());
+        } catch (RuntimeException e) {
+            log.error("bulk load failed", e);
+            progress.finish(e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void clear() {
+        jdbcTemplate.execute("truncate table member"); // member 를 참조하는 테이블이 없어 truncate 가능
+        jdbcTemplate.update("delete from team_stat");
+        jdbcTemplate.update("delete from team");
+    }
+
+    private void insertTeams(BulkLoadSpec spec, long firstTeamId) {
+        jdbcTemplate.batchUpdate(INSERT_TEAM, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                ps.setLong(1, firstTeamId + i);
+                ps.setString(2, "team" + i);
+            }
+
+            @Override
+            public int getBatchSize() {
+                return spec.getTeams();
+            }
+        });
+    }
+
+    // chunk 마다 seed 를 고정해 스레드 수와 상관없이 같은 데이터가 나오게 한다
+    private void insertMembers(BulkLoadSpec spec, BulkDataGenerator generator, Progress progress,
+            long firstTeamId, long firstMemberId, long from, long to) {
+        Random random = new Random(spec.getSeed() * 31 + from);
+        for (long batchFrom = from; batchFrom < to; batchFrom += spec.getBatchSize()) {
+            long start = batchFrom;
+            int size = (int) Math.min(spec.getBatchSize(), to - batchFrom);
+            jdbcTemplate.batchUpdate(INSERT_MEMBER, new BatchPreparedStatementSetter() {
+                @Override
+                public void setValues(PreparedStatement ps, int i) throws SQLException {
+                    long n = start + i;
+                    ps.setLong(1, firstMemberId + n);
+                    ps.setString(2, "member" + n);
+                    ps.setInt(3, generator.nextAge(random));
+                    ps.setLong(4, firstTeamId + generator.nextTeam(random));
+                }
+
+                @Override
+                public int getBatchSize() {
+                    return size;
+                }
+            });
+            progress.add(size);
+        }
+    }
+
+    public static class Progress {
+
+        @Getter
+        private final long total;
+        @Getter
+        private final long startedAt = System.currentTimeMillis();
+        @Getter
+        private volatile long finishedAt;
+        @Getter
+        private volatile String error;
+        private final AtomicLong loadedCounter = new AtomicLong();
+        private volatile long lastLoggedPercent;
+
+        Progress(long total) {
+            this.total = total;
+        }
+
+        public long getLoaded() {
+            return loadedCounter.get();
+        }
+
+        public boolean isRunning() {
+            return finishedAt == 0;
+        }
+
+        public long getElapsedMillis() {
+            return (isRunning() ? System.currentTimeMillis() : finishedAt) - startedAt;
+        }
+
+        public long getRowsPerSecond() {
+            long elapsed = Math.max(1, getElapsedMillis());
+            return getLoaded() * 1000 / elapsed;
+        }
+
+        void add(int rows) {
+            long loaded = loadedCounter.addAndGet(rows);
+            long percent = total == 0 ? 100 : loaded * 100 / total;
+            if (percent / 10 > lastLoggedPercent / 10) {
+                lastLoggedPercent = percent;
+                log.info("bulk load {}% ({}/{}, {} rows/s)", percent, loaded, total, getRowsPerSecond());
+            }
+        }
+
+        void finish(Throwable error) {
+            this.error = error == null ? null : error.toString();
+            this.finishedAt = System.currentTimeMillis();
+        }
+    }
+}
@@ -0,0 +1,453 @@
+package study.querydsl.service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import lombok.Data;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.repository.MemberChangeEvent.Kind;
+import study.querydsl.repository.MemberChangeEvent.Target;
+import study.querydsl.repository.MemberChangeFeed;
+
+/**
+ * CSV(username,age,teamName 헤더, UTF-8)로 회원을 대량 등록/갱신한다.
+ * 본문을 한 줄씩 읽어 chunkSize 건마다 한 트랜잭션으로 JDBC batch MERGE 한다. username 이 같은 회원이 있으면 age/team 을 갱신하고 없으면 새로 넣는다.
+ * member.username 에는 unique 제약이 없다. 이미 같은 username 이 여러 명이면 어느 회원인지 알 수 없으므로 그 줄은 오류로 남긴다.
+ * import 끼리 같은 username 을 동시에 새로 넣지 않도록 chunk 쓰기는 직렬화한다. 다른 인스턴스나 엔티티 저장과의 경합은 막지 못한다.
+ * 엔티티/영속성 컨텍스트를 거치지 않으므로 메모리는 chunk 하나, 팀 이름 캐시, 보고용 오류 maxErrors 건으로 묶인다.
+ * chunk 가 실패하면 롤백하고 그 chunk 만 한 건씩 다시 넣어 실패한 줄을 찾는다.
+ * 리스너를 거치지 않으므로 team_stat 은 chunk 마다 영향받은 팀만 다시 계산하고, 변경은 MemberChangeFeed 로 알린다.
+ */
+@Slf4j
+@Service
+public class MemberCsvImporter {
+
+    // MemberBulkRepository 와 같은 기준. 이보다 많으면 ids 없이 기록해 구독자가 전체를 다시 읽는다
+    private static final int MAX_TRACKED_IDS = 1000;
+    private static final int MAX_USERNAME_LENGTH = 255;
+    private static final String AMBIGUOUS_USERNAME = "username matches more than one member";
+
+    private static final String MERGE_MEMBER = "merge into member m using (select cast(? as varchar(255)) username,"
+            + " cast(? as int) age, cast(? as bigint) team_id) s on (m.username = s.username)"
+            + " when matched then update set age = s.age, team_id = s.team_id, version = m.version + 1"
+            + " when not matched then insert (member_id, username, age, team_id, version)"
+            + " values (next value for hibernate_sequence, s.username, s.age, s.team_id, 0)";
+    // TeamStatReconciler 도 같은 문장으로 고친다
+    static final String RECOMPUTE_TEAM_STAT =
+            "merge into team_stat (team_id, member_count, age_sum, age_min, age_max) key (team_id)"
+                    + " select t.id, count(m.member_id), coalesce(sum(m.age), 0), min(m.age), max(m.age)"
+                    + " from team t left join member m on m.team_id = t.id where t.id in (:teamIds) group by t.id";
+
+    private final NamedParameterJdbcTemplate jdbc;
+    private final TransactionTemplate chunkTx;
+    private final MemberChangeFeed changeFeed;
+    private final int chunkSize;
+    private final int maxErrors;
+    private final int teamCacheSize;
+    private final Map<String, Progress> running = new ConcurrentHashMap<>();
+    private final Object mergeLock = new Object();
+
+    public MemberCsvImporter(NamedParameterJdbcTemplate jdbc, PlatformTransactionManager transactionManager,
+            MemberChangeFeed changeFeed,
+            @Value("${member.import.chunk-size:1000}") int chunkSize,
+            @Value("${member.import.max-errors:100}") int maxErrors,
+            @Value("${member.import.team-cache-size:10000}") int teamCacheSize) {
+        this.jdbc = jdbc;
+        this.chunkTx = new TransactionTemplate(transactionManager);
+        this.chunkTx.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.changeFeed = changeFeed;
+        this.chunkSize = chunkSize;
+        this.maxErrors = maxErrors;
+        this.teamCacheSize = teamCacheSize;
+    }
+
+    // 진행 중인 import. 끝나면 빠진다
+    public Collection<Progress> getRunning() {
+        return running.values();
+    }
+
+    /**
+     * 본문을 끝까지 읽고 나서 결과를 돌려준다. 헤더가 잘못되면 IllegalArgumentException.
+     */
+    public Progress importCsv(InputStream body) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8));
+        Header header = Header.parse(reader.readLine());
+        Progress progress = new Progress(UUID.randomUUID().toString().substring(0, 8), maxErrors);
+        running.put(progress.getId(), progress);
+        try {
+            TeamCache teams = new TeamCache(teamCacheSize);
+            List<Row> chunk = new ArrayList<>(chunkSize);
+            String line;
+            long lineNumber = 1;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank()) {
+                    continue;
+                }
+                progress.readCounter.incrementAndGet();
+                try {
+                    chunk.add(header.row(lineNumber, line));
+                } catch (IllegalArgumentException e) {
+                    progress.fail(lineNumber, e.getMessage());
+                    continue;
+                }
+                if (chunk.size() == chunkSize) {
+                    write(chunk, teams, progress);
+                    chunk.clear();
+                }
+            }
+            write(chunk, teams, progress);
+            progress.finish(null);
+            log.info("csv import {} done. read={}, written={}, failed={}, {}ms", progress.getId(),
+                    progress.getRead(), progress.getWritten(), progress.getFailed(), progress.getElapsedMillis());
+            return progress;
+        } catch (IOException | RuntimeException e) {
+            log.error("csv import {} failed", progress.getId(), e);
+            progress.finish(e);
+            throw e;
+        } finally {
+            running.remove(progress.getId());
+        }
+    }
+
+    private void write(List<Row> chunk, TeamCache teams, Progress progress) {
+        if (chunk.isEmpty()) {
+            return;
+        }
+        for (Row row : chunk) {
+            row.teamId = row.teamName == null ? null : teams.resolve(row.teamName);
+        }
+        synchronized (mergeLock) {
+            try {
+                List<Row> skipped = chunkTx.execute(status -> merge(chunk));
+                progress.writtenCounter.addAndGet(chunk.size() - skipped.size());
+                skipped.forEach(row -> progress.fail(row.line, AMBIGUOUS_USERNAME));
+            } catch (DataAccessException e) {
+                log.warn("csv import {} chunk failed, retrying row by row: {}", progress.getId(), e.getMessage());
+                for (Row row : chunk) {
+                    try {
+                        if (chunkTx.execute(status -> merge(List.of(row))).isEmpty()) {
+                            progress.writtenCounter.incrementAndGet();
+                        } else {
+                            progress.fail(row.line, AMBIGUOUS_USERNAME);
+                        }
+                    } catch (DataAccessException rowError) {
+                        progress.fail(row.line, rowError.getMostSpecificCause().getMessage());
+                    }
+                }
+            }
+        }
+    }
+
+    // 쓰지 않고 건너뛴 줄(username 이 여러 회원에 걸린 줄)을 돌려준다. MERGE 가 그 회원들을 한꺼번에 고치게 되기 때문이다
+    private List<Row> merge(List<Row> chunk) {
+        Set<String> ambiguous = new HashSet<>(jdbc.queryForList(
+                "select username from member where username in (:usernames) group by username having count(*) > 1",
+                new MapSqlParameterSource("usernames", usernamesOf(chunk)), String.class));
+        List<Row> rows = new ArrayList<>(chunk.size());
+        List<Row> skipped = new ArrayList<>();
+        for (Row row : chunk) {
+            (ambiguous.contains(row.username) ? skipped : rows).add(row);
+        }
+        if (rows.isEmpty()) {
+            return skipped;
+        }
+
+        Set<Long> touchedTeams = new HashSet<>();
+        for (Row row : rows) {
+            if (row.teamId != null) {
+                touchedTeams.add(row.teamId);
+            }
+        }
+        MapSqlParameterSource byUsername = new MapSqlParameterSource("usernames", usernamesOf(rows));
+        // 갱신으로 팀을 떠나는 회원의 원래 팀도 통계를 다시 계산해야 한다
+        touchedTeams.addAll(jdbc.queryForList(
+                "select distinct team_id from member where username in (:usernames) and team_id is not null",
+                byUsername, Long.class));
+
+        List<Object[]> args = new ArrayList<>(rows.size());
+        for (Row row : rows) {
+            args.add(new Object[]{row.username, row.age, row.teamId});
+        }
+        jdbc.getJdbcTemplate().batchUpdate(MERGE_MEMBER, args);
+
+        if (!touchedTeams.isEmpty()) {
+            jdbc.update(RECOMPUTE_TEAM_STAT, new MapSqlParameterSource("teamIds", touchedTeams));
+        }
+        List<Long> ids = jdbc.queryForList("select member_id from member where username in (:usernames)",
+                byUsername, Long.class);
+        changeFeed.record(Target.MEMBER, Kind.BULK_UPDATED, ids.size() <= MAX_TRACKED_IDS ? ids : null,
+                "csv import");
+        return skipped;
+    }
+
+    private static Set<String> usernamesOf(List<Row> rows) {
+        Set<String> usernames = new LinkedHashSet<>();
+        for (Row row : rows) {
+            usernames.add(row.username);
+        }
+        return usernames;
+    }
+
+    /**
+     * import 한 번 동안 쓰는 팀 이름 -> id 캐시. 크기를 넘으면 오래 안 쓴 것부터 버린다.
+     * 없는 팀은 별도 트랜잭션으로 바로 만든다. chunk 가 롤백돼도 팀은 남으므로 다음 chunk 가 그대로 쓸 수 있다.
+     */
+    private class TeamCache {
+
+        private final Map<String, Long> ids;
+
+        TeamCache(int capacity) {
+            this.ids = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+                    return size() > capacity;
+                }
+            };
+        }
+
+        Long resolve(String name) {
+            Long id = ids.get(name);
+            if (id == null) {
+                id = findOrCreateTeam(name);
+                ids.put(name, id);
+            }
+            return id;
+        }
+    }
+
+    // team.name 에 unique 제약이 없으므로 import 끼리 같은 팀을 두 번 만들지 않도록 직렬화한다
+    private synchronized Long findOrCreateTeam(String name) {
+        return chunkTx.execute(status -> {
+            MapSqlParameterSource params = new MapSqlParameterSource("name", name);
+            List<Long> existing = jdbc.queryForList("select min(id) from team where name = :name", params, Long.class);
+            if (!existing.isEmpty() && existing.get(0) != null) {
+                return existing.get(0);
+            }
+            Long id = jdbc.getJdbcTemplate().queryForObject("select next value for hibernate_sequence", Long.class);
+            params.addValue("id", id);
+            jdbc.update("insert into team (id, name, version) values (:id, :name, 0)", params);
+            jdbc.update("insert into team_stat (team_id, member_count, age_sum) values (:id, 0, 0)", params);
+            changeFeed.record(Target.TEAM, Kind.BULK_UPDATED, List.of(id), "csv import");
+            return id;
+        });
+    }
+
+    private static class Row {
+
+        private final long line;
+        private final String username;
+        private final int age;
+        private final String teamName;
+        private Long teamId;
+
+        Row(long line, String username, int age, String teamName) {
+            this.line = line;
+            this.username = username;
+            this.age = age;
+            this.teamName = teamName;
+        }
+    }
+
+    /**
+     * 헤더로 컬럼 위치를 정한다. 순서는 자유이고 모르는 컬럼은 무시한다. teamName 컬럼/값이 없으면 팀 없이 넣는다.
+     */
+    static class Header {
+
+        private final int username;
+        private final int age;
+        private final int teamName;
+
+        private Header(int username, int age, int teamName) {
+            this.username = username;
+            this.age = age;
+            this.teamName = teamName;
+        }
+
+        static Header parse(String line) {
+            if (line == null) {
+                throw new IllegalArgumentException("empty body, header username,age[,teamName] is required");
+            }
+            List<String> names = split(line.startsWith("\uFEFF") ? line.substring(1) : line);
+            int username = -1;
+            int age = -1;
+            int teamName = -1;
+            for (int i = 0; i < names.size(); i++) {
+                switch (names.get(i).trim().toLowerCase(Locale.ROOT)) {
+                    case "username":
+                        username = i;
+                        break;
+                    case "age":
+                        age = i;
+                        break;
+                    case "teamname":
+                        teamName = i;
+                        break;
+                    default:
+                }
+            }
+            if (username < 0 || age < 0) {
+                throw new IllegalArgumentException("header must contain username and age: " + line);
+            }
+            return new Header(username, age, teamName);
+        }
+
+        Row row(long lineNumber, String line) {
+            List<String> fields = split(line);
+            String name = field(fields, username);
+            if (name == null) {
+                throw new IllegalArgumentException("username is empty");
+            }
+            if (name.length() > MAX_USERNAME_LENGTH) {
+                throw new IllegalArgumentException("username is longer than " + MAX_USERNAME_LENGTH);
+            }
+            String ageText = field(fields, age);
+            int parsedAge;
+            try {
+                parsedAge = Integer.parseInt(ageText == null ? "" : ageText);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("invalid age: " + ageText);
+            }
+            if (parsedAge < 0) {
+                throw new IllegalArgumentException("invalid age: " + ageText);
+            }
+            return new Row(lineNumber, name, parsedAge, teamName < 0 ? null : field(fields, teamName));
+        }
+
+        private static String field(List<String> fields, int index) {
+            if (index >= fields.size()) {
+                return null;
+            }
+            String value = fields.get(index).trim();
+            return value.isEmpty() ? null : value;
+        }
+
+        // RFC 4180 의 한 줄. 큰따옴표로 감싼 값 안의 , 와 "" 를 처리한다. 값 안의 줄바꿈은 지원하지 않는다
+        static List<String> split(String line) {
+            List<String> fields = new ArrayList<>();
+            StringBuilder current = new StringBuilder();
+            boolean quoted = false;
+            for (int i = 0; i < line.length(); i++) {
+                char c = line.charAt(i);
+                if (quoted) {
+                    if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                        current.append('"');
+                        i++;
+                    } else if (c == '"') {
+                        quoted = false;
+                    } else {
+                        current.append(c);
+                    }
+                } else if (c == '"') {
+                    quoted = true;
+                } else if (c == ',') {
+                    fields.add(current.toString());
+                    current.setLength(0);
+                } else {
+                    current.append(c);
+                }
+            }
+            if (quoted) {
+                throw new IllegalArgumentException("unterminated quote");
+            }
+            fields.add(current.toString());
+            return fields;
+        }
+    }
+
+    public static class Progress {
+
+        @Getter
+        private final String id;
+        @Getter
+        private final long startedAt = System.currentTimeMillis();
+        @Getter
+        private volatile long finishedAt;
+        @Getter
+        private volatile String error;
+        private final int maxErrors;
+        private final AtomicLong readCounter = new AtomicLong();
+        private final AtomicLong writtenCounter = new AtomicLong();
+        private final AtomicLong failedCounter = new AtomicLong();
+        private final List<RowError> errors = Collections.synchronizedList(new ArrayList<>());
+
+        Progress(String id, int maxErrors) {
+            this.id = id;
+            this.maxErrors = maxErrors;
+        }
+
+        public long getRead() {
+            return readCounter.get();
+        }
+
+        public long getWritten() {
+            return writtenCounter.get();
+        }
+
+        public long getFailed() {
+            return failedCounter.get();
+        }
+
+        // 앞에서부터 maxErrors 건만 남긴다. 전체 건수는 failed
+        public List<RowError> getErrors() {
+            synchronized (errors) {
+                return new ArrayList<>(errors);
+            }
+        }
+
+        public boolean isRunning() {
+            return finishedAt == 0;
+        }
+
+        public long getElapsedMillis() {
+            return (isRunning() ? System.currentTimeMillis() : finishedAt) - startedAt;
+        }
+
+        public long getRowsPerSecond() {
+            long elapsed = Math.max(1, getElapsedMillis());
+            return getWritten() * 1000 / elapsed;
+        }
+
+        void fail(long line, String message) {
+            if (failedCounter.incrementAndGet() <= maxErrors) {
+                errors.add(new RowError(line, message));
+            }
+        }
+
+        void finish(Throwable error) {
+            this.error = error == null ? null : error.toString();
+            this.finishedAt = System.currentTimeMillis();
+        }
+    }
+
+    @Data
+    public static class RowError {
+
+        private final long line;
+        private final String message;
+    }
+}
@@ -0,0 +1,286 @@
+package study.querydsl.service;
+
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+import com.querydsl.core.Tuple;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.dto.QMemberTeamDto;
+
+/**
+ * 전체 MemberTeamDto 를 CSV 로 내보낸다.
+ * member_id 구간을 나눠 구간마다 별도 스레드/커넥션/읽기 전용 트랜잭션에서 DTO 로 읽는다.
+ * 구간 안에서는 id 기준 keyset 으로 fetchSize 씩 읽어 영속성 컨텍스트와 메모리가 커지지 않게 한다.
+ * ordered 면 구간별 임시 파일을 id 순서대로 이어 붙이고, 아니면 끝나는 순서대로 한 파일에 쓴다.
+ * parallelism 은 커넥션 풀 크기보다 작게 둔다.
+ */
+@Slf4j
+@Service
+public class MemberExportService {
+
+    private static final String HEADER = "memberId,username,age,teamId,teamName\n";
+    private static final long CANCEL_TIMEOUT_SECONDS = 60;
+
+    private final JPAQueryFactory queryFactory;
+    private final TransactionTemplate readOnlyTx;
+    private final int parallelism;
+    private final int fetchSize;
+    private final String exportDir;
+
+    public MemberExportService(JPAQueryFactory queryFactory, PlatformTransactionManager transactionManager,
+            @Value("${member.export.parallelism:0}") int parallelism,
+            @Value("${member.export.fetch-size:5000}") int fetchSize,
+            @Value("${member.export.dir:build/export}") String exportDir) {
+        this.queryFactory = queryFactory;
+        this.readOnlyTx = new TransactionTemplate(transactionManager);
+        this.readOnlyTx.setReadOnly(true);
+        this.readOnlyTx.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.parallelism = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        this.fetchSize = fetchSize;
+        this.exportDir = exportDir;
+    }
+
+    @Scheduled(cron = "${member.export.cron:-}")
+    public void nightlyExport() throws IOException {
+        export(Paths.get(exportDir, "members-" + LocalDate.now() + ".csv"), true);
+    }
+
+    public ExportResult export(Path target, boolean ordered) throws IOException {
+        long start = System.nanoTime();
+        Files.createDirectories(target.toAbsolutePath().getParent());
+
+        Tuple bounds = queryFactory.select(member.id.min(), member.id.max()).from(member).fetchOne();
+        Long min = bounds == null ? null : bounds.get(member.id.min());
+        Long max = bounds == null ? null : bounds.get(member.id.max());
+        List<long[]> ranges = min == null ? List.of() : partitions(min, max, parallelism * 4);
+
+        AtomicLong rows = new AtomicLong();
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        // 임시 파일에 다 쓴 뒤에만 target 으로 옮긴다. 실패하면 기존 target 은 그대로 남는다
+        Path temp = Files.createTempFile(target.toAbsolutePath().getParent(), "members-", ".csv.tmp");
+        try {
+            if (ordered) {
+                exportOrdered(temp, ranges, pool, rows);
+            } else {
+                exportUnordered(temp, ranges, pool, rows);
+            }
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            pool.shutdownNow();
+            Files.deleteIfExists(temp);
+        }
+
+        ExportResult result = new ExportResult(target.toString(), rows.get(), ranges.size(),
+                (System.nanoTime() - start) / 1_000_000);
+        log.info("member export done. {}", result);
+        return result;
+    }
+
+    private void exportOrdered(Path target, List<long[]> ranges, ForkJoinPool pool, AtomicLong rows)
+            throws IOException {
+        List<Path> parts = new ArrayList<>();
+        List<Future<?>> futures = new ArrayList<>();
+        try {
+            // 임시 파일을 먼저 다 만들어 둬야 생성 실패 시 돌고 있는 작업이 남지 않는다
+            for (int i = 0; i < ranges.size(); i++) {
+                parts.add(Files.createTempFile(target.toAbsolutePath().getParent(), "members-part-", ".csv"));
+            }
+            for (int i = 0; i < ranges.size(); i++) {
+                Path part = parts.get(i);
+                long[] range = ranges.get(i);
+                futures.add(pool.submit(() -> {
+                    try (Writer writer = Files.newBufferedWriter(part, StandardCharsets.UTF_8)) {
+                        exportRange(range[0], range[1], writer, rows);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }));
+            }
+            await(futures, pool);
+
+            try (OutputStream out = Files.newOutputStream(target)) {
+                out.write(HEADER.getBytes(StandardCharsets.UTF_8));
+                for (Path part : parts) {
+                    Files.copy(part, out);
+                }
+            }
+        } finally {
+            for (Path part : parts) {
+                Files.deleteIfExists(part);
+            }
+        }
+    }
+
+    private void exportUnordered(Path target, List<long[]> ranges, ForkJoinPool pool, AtomicLong rows)
+            throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(target, StandardCharsets.UTF_8)) {
+            writer.write(HEADER);
+            List<Future<?>> futures = new ArrayList<>();
+            for (long[] range : ranges) {
+                // 배치 단위로 문자열을 만든 뒤 잠깐만 잠그고 쓴다
+                futures.add(pool.submit(() -> exportRange(range[0], range[1], new Writer() {
+                    private final StringBuilder buffer = new StringBuilder();
+
+                    @Override
+                    public void write(char[] cbuf, int off, int len) {
+                        buffer.append(cbuf, off, len);
+                    }
+
+                    @Override
+                    public void flush() throws IOException {
+                        synchronized (writer) {
+                            writer.append(buffer);
+                        }
+                        buffer.setLength(0);
+                    }
+
+                    @Override
+                    public void close() throws IOException {
+                        flush();
+                    }
+                }, rows)));
+            }
+            // 실패해도 남은 작업이 다 멈춘 뒤에 writer 를 닫는다
+            await(futures, pool);
+        }
+    }
+
+    // [from, to] 구간을 keyset 으로 끝까지 읽어 writer 에 쓴다. fetchSize 마다 flush
+    private void exportRange(long from, long to, Writer writer, AtomicLong rows) {
+        readOnlyTx.executeWithoutResult(status -> {
+            long cursor = from - 1;
+            while (true) {
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new IllegalStateException("member export cancelled");
+                }
+                List<MemberTeamDto> batch = queryFactory
+                        .select(new QMemberTeamDto(
+                                member.id.as("memberId"),
+                                member.username,
+                                member.age,
+                                team.id.as("teamId"),
+                                team.name.as("teamName")))
+                        .from(member)
+                        .leftJoin(member.team, team)
+                        .where(member.id.gt(cursor), member.id.loe(to))
+                        .orderBy(member.id.asc())
+                        .limit(fetchSize)
+                        .fetch();
+                try {
+                    for (MemberTeamDto row : batch) {
+                        writeCsv(writer, row);
+                    }
+                    writer.flush();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                rows.addAndGet(batch.size());
+                if (batch.size() < fetchSize) {
+                    return;
+                }
+                cursor = batch.get(batch.size() - 1).getMemberId();
+            }
+        });
+    }
+
+    // 하나라도 실패하면 나머지를 취소하고 실행 중인 작업이 끝날 때까지 기다린 뒤 던진다
+    private static void await(List<Future<?>> futures, ForkJoinPool pool) throws IOException {
+        try {
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            cancel(futures, pool);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("member export interrupted", e);
+        } catch (ExecutionException e) {
+            cancel(futures, pool);
+            if (e.getCause() instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) e.getCause()).getCause();
+            }
+            throw new IllegalStateException("member export failed", e.getCause());
+        }
+    }
+
+    private static void cancel(List<Future<?>> futures, ForkJoinPool pool) {
+        futures.forEach(future -> future.cancel(true));
+        pool.shutdownNow();
+        try {
+            if (!pool.awaitTermination(CANCEL_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                log.warn("member export tasks did not stop within {}s", CANCEL_TIMEOUT_SECONDS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // [min, max] 를 count 개 이하의 연속 구간으로 나눈다
+    static List<long[]> partitions(long min, long max, int count) {
+        long span = max - min + 1;
+        long step = Math.max(1, (span + count - 1) / count);
+        List<long[]> ranges = new ArrayList<>();
+        for (long from = min; from <= max; from += step) {
+            ranges.add(new long[]{from, Math.min(max, from + step - 1)});
+        }
+        return ranges;
+    }
+
+    static void writeCsv(Writer writer, MemberTeamDto row) throws IOException {
+        writer.write(String.valueOf(row.getMemberId()));
+        writer.write(',');
+        writer.write(csv(row.getUsername()));
+        writer.write(',');
+        writer.write(String.valueOf(row.getAge()));
+        writer.write(',');
+        writer.write(row.getTeamId() == null ? "" : String.valueOf(row.getTeamId()));
+        writer.write(',');
+        writer.write(csv(row.getTeamName()));
+        writer.write('\n');
+    }
+
+    private static String csv(String value) {
+        if (value == null) {
+            return "";
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    @Data
+    public static class ExportResult {
+
+        private final String file;
+        private final long rows;
+        private final int partitions;
+        private final long elapsedMillis;
+    }
+}
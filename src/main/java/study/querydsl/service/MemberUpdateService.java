@@ -0,0 +1,97 @@
+package study.querydsl.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
+import javax.persistence.EntityManager;
+import javax.persistence.OptimisticLockException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.repository.MemberRepository;
+
+/**
+ * Member 단건 변경을 @Version 낙관적 락으로 처리하고, 충돌하면 새 트랜잭션으로 다시 읽어 재시도한다.
+ * 비관적 락처럼 읽는 동안 행을 잡고 있지 않으므로, 충돌이 드문 행은 서로 기다리지 않는다.
+ * 재시도 간격은 지수 증가 + full jitter 이고 maxBackoffMillis 를 넘지 않는다. maxAttempts 를 넘기면 충돌 예외를 그대로 던진다.
+ * 재시도마다 change 가 다시 실행되므로 change 는 엔티티 외의 상태를 바꾸지 않아야 한다.
+ */
+@Slf4j
+@Service
+public class MemberUpdateService {
+
+    private static final String METRIC_NAME = "member.update";
+
+    private final MemberRepository memberRepository;
+    private final EntityManager em;
+    private final TransactionTemplate transactionTemplate;
+    private final MeterRegistry meterRegistry;
+    private final int maxAttempts;
+    private final long baseBackoffMillis;
+    private final long maxBackoffMillis;
+
+    public MemberUpdateService(MemberRepository memberRepository, EntityManager em,
+            PlatformTransactionManager transactionManager, MeterRegistry meterRegistry,
+            @Value("${member.update.max-attempts:5}") int maxAttempts,
+            @Value("${member.update.base-backoff-ms:5}") long baseBackoffMillis,
+            @Value("${member.update.max-backoff-ms:100}") long maxBackoffMillis) {
+        this.memberRepository = memberRepository;
+        this.em = em;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.meterRegistry = meterRegistry;
+        this.maxAttempts = maxAttempts;
+        this.baseBackoffMillis = baseBackoffMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+    }
+
+    public Member changeAge(Long memberId, int age) {
+        return update(memberId, m -> m.setAge(age));
+    }
+
+    public Member addAge(Long memberId, int delta) {
+        return update(memberId, m -> m.setAge(m.getAge() + delta));
+    }
+
+    public Member moveTeam(Long memberId, Long teamId) {
+        return update(memberId, m -> m.changeTeam(em.getReference(Team.class, teamId)));
+    }
+
+    public Member update(Long memberId, Consumer<Member> change) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                Member updated = transactionTemplate.execute(status -> {
+                    Member m = memberRepository.findById(memberId)
+                            .orElseThrow(() -> new IllegalArgumentException("member not found: " + memberId));
+                    change.accept(m);
+                    return m;
+                });
+                meterRegistry.counter(METRIC_NAME, "outcome", attempt == 1 ? "first" : "retried").increment();
+                return updated;
+            } catch (OptimisticLockingFailureException | OptimisticLockException e) {
+                if (attempt >= maxAttempts) {
+                    meterRegistry.counter(METRIC_NAME, "outcome", "exhausted").increment();
+                    log.warn("member update gave up. memberId={}, attempts={}", memberId, attempt);
+                    throw e;
+                }
+                meterRegistry.counter(METRIC_NAME, "outcome", "conflict").increment();
+                backoff(attempt);
+            }
+        }
+    }
+
+    private void backoff(int attempt) {
+        long cap = Math.min(maxBackoffMillis, baseBackoffMillis << Math.min(attempt - 1, 20));
+        long sleep = ThreadLocalRandom.current().nextLong(cap + 1);
+        try {
+            Thread.sleep(sleep);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while retrying member update", e);
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package study.querydsl.service;
+
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.querydsl.core.Tuple;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import java.util.ArrayList;
+import java.util.List;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import study.querydsl.dto.MemberSearchCond;
+import study.querydsl.repository.MemberRepository;
+import study.querydsl.repository.MemberSearchMetrics;
+
+/**
+ * 트래픽을 받기 전에 MemberSearchCond 의 모든 조건 조합으로 search/searchPageComplex 를 실제 DB 에 실행하고 JSON 으로 직렬화한다.
+ * HQL 파싱/쿼리 플랜 캐시, Querydsl 직렬화 코드의 JIT, Jackson serializer 생성을 첫 요청 대신 여기서 치른다.
+ * search 는 메모리 색인 대신 DB 쿼리를 직접 실행하고, 조건이 없는 모양도 테이블 전체를 읽지 않게 UNPAGED_LIMIT 건만 읽는다.
+ * 워밍업 호출은 MemberSearchMetrics 에 기록하지 않는다.
+ * ApplicationReadyEvent 리스너 안에서 동기로 돌기 때문에, 끝나기 전까지 readiness 는 ACCEPTING_TRAFFIC 이 되지 않는다
+ * (Boot 는 ready 리스너가 모두 끝난 뒤 readiness 를 바꾼다). iterations 와 max-millis 중 먼저 닿는 쪽에서 멈춘다.
+ */
+@Slf4j
+@Component
+public class QueryWarmup {
+
+    private static final int FIELDS = 5;
+    private static final int UNPAGED_LIMIT = 20;
+
+    private final MemberRepository memberRepository;
+    private final MemberSearchMetrics searchMetrics;
+    private final JPAQueryFactory queryFactory;
+    private final ObjectMapper objectMapper;
+    private final boolean enabled;
+    private final int iterations;
+    private final long maxMillis;
+
+    public QueryWarmup(MemberRepository memberRepository, MemberSearchMetrics searchMetrics,
+            JPAQueryFactory queryFactory, ObjectMapper objectMapper,
+            @Value("${member.warmup.enabled:true}") boolean enabled,
+            @Value("${member.warmup.iterations:20}") int iterations,
+            @Value("${member.warmup.max-millis:30000}") long maxMillis) {
+        this.memberRepository = memberRepository;
+        this.searchMetrics = searchMetrics;
+        this.queryFactory = queryFactory;
+        this.objectMapper = objectMapper;
+        this.enabled = enabled;
+        this.iterations = iterations;
+        this.maxMillis = maxMillis;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmup() {
+        if (!enabled) {
+            return;
+        }
+        long start = System.nanoTime();
+        long deadline = start + maxMillis * 1_000_000L;
+        List<MemberSearchCond> shapes = List.of();
+
+        int done = 0;
+        int calls = 0;
+        try {
+            // 샘플 조회도 실패할 수 있으므로 try 안에서 한다
+            shapes = shapes(sample());
+            while (done < iterations && System.nanoTime() < deadline) {
+                for (MemberSearchCond cond : shapes) {
+                    objectMapper.writeValueAsBytes(memberRepository.searchFromDb(cond, UNPAGED_LIMIT));
+                    objectMapper.writeValueAsBytes(searchMetrics.unrecorded(
+                            () -> memberRepository.searchPageComplex(cond, PageRequest.of(0, 20))));
+                    calls += 2;
+                }
+                done++;
+            }
+        } catch (JsonProcessingException | RuntimeException e) {
+            // 워밍업 실패로 기동을 막지는 않는다
+            log.warn("query warmup stopped early. iterations={}", done, e);
+        }
+        log.info("query warmup done. shapes={}, iterations={}/{}, calls={}, {}ms",
+                shapes.size(), done, iterations, calls, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    // 실제 데이터에 맞는 값으로 조건을 채워야 실행 계획도 실제와 같아진다. 비어 있으면 기본값
+    private MemberSearchCond sample() {
+        Tuple row = queryFactory
+                .select(member.username, member.age, team.name)
+                .from(member)
+                .leftJoin(member.team, team)
+                .orderBy(member.id.asc())
+                .limit(1)
+                .fetchOne();
+        return row == null ? sample(null, null, null)
+                : sample(row.get(member.username), row.get(member.age), row.get(team.name));
+    }
+
+    // username 은 nullable 컬럼이다. 비어 있는 값은 기본값으로 채운다
+    static MemberSearchCond sample(String username, Integer age, String teamName) {
+        if (username == null || username.isEmpty()) {
+            username = "member1";
+        }
+        if (age == null) {
+            age = 10;
+        }
+        if (teamName == null) {
+            teamName = "teamA";
+        }
+        MemberSearchCond sample = new MemberSearchCond();
+        sample.setUsername(username);
+        sample.setUsernameContains(username.length() > 3 ? username.substring(1, 4) : username);
+        sample.setTeamName(teamName);
+        sample.setAgeGoe(age);
+        sample.setAgeLoe(age + 10);
+        return sample;
+    }
+
+    // 필드 5개의 모든 채움 조합(32개)
+    static List<MemberSearchCond> shapes(MemberSearchCond sample) {
+        List<MemberSearchCond> shapes = new ArrayList<>();
+        for (int mask = 0; mask < 1 << FIELDS; mask++) {
+            MemberSearchCond cond = new MemberSearchCond();
+            cond.setUsername((mask & 1) != 0 ? sample.getUsername() : null);
+            cond.setUsernameContains((mask & 1 << 1) != 0 ? sample.getUsernameContains() : null);
+            cond.setTeamName((mask & 1 << 2) != 0 ? sample.getTeamName() : null);
+            cond.setAgeGoe((mask & 1 << 3) != 0 ? sample.getAgeGoe() : null);
+            cond.setAgeLoe((mask & 1 << 4) != 0 ? sample.getAgeLoe() : null);
+            shapes.add(cond);
+        }
+        return shapes;
+    }
+}
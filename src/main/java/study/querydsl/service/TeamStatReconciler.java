@@ -0,0 +1,116 @@
+package study.querydsl.service;
+
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+import com.querydsl.core.Tuple;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Collectors;
+import javax.persistence.EntityManager;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.dto.TeamStatDto;
+import study.querydsl.repository.TeamStatRepository;
+
+/**
+ * team_stat 과 실제 member 집계를 비교해 어긋난 팀을 찾는다.
+ * 벌크 update/delete 처럼 이벤트를 거치지 않은 변경이 원인이므로, repair 가 켜져 있으면 어긋난 팀을 member 에서 다시 집계해 덮어쓴다.
+ */
+@Slf4j
+@Service
+@Transactional
+public class TeamStatReconciler {
+
+    private final EntityManager em;
+    private final JPAQueryFactory queryFactory;
+    private final TeamStatRepository teamStatRepository;
+    private final boolean repair;
+
+    public TeamStatReconciler(EntityManager em, JPAQueryFactory queryFactory, TeamStatRepository teamStatRepository,
+            @Value("${team.stat.reconcile.repair:true}") boolean repair) {
+        this.em = em;
+        this.queryFactory = queryFactory;
+        this.teamStatRepository = teamStatRepository;
+        this.repair = repair;
+    }
+
+    @Scheduled(cron = "${team.stat.reconcile.cron:0 0 4 * * *}")
+    public void scheduledReconcile() {
+        List<Drift> drifts = reconcile();
+        log.info("team_stat reconcile done. drift={}", drifts.size());
+    }
+
+    public List<Drift> reconcile() {
+        Map<Long, Drift> actual = new HashMap<>();
+        for (Long teamId : queryFactory.select(team.id).from(team).fetch()) {
+            actual.put(teamId, new Drift(teamId));
+        }
+        List<Tuple> rows = queryFactory
+                .select(member.team.id, member.count(), member.age.sum(), member.age.min(), member.age.max())
+                .from(member)
+                .where(member.team.isNotNull())
+                .groupBy(member.team.id)
+                .fetch();
+        for (Tuple row : rows) {
+            Drift drift = actual.get(row.get(0, Long.class));
+            drift.setMemberCount(row.get(1, Number.class).longValue());
+            drift.setAgeSum(row.get(2, Number.class).longValue());
+            drift.setAgeMin(row.get(3, Number.class).intValue());
+            drift.setAgeMax(row.get(4, Number.class).intValue());
+        }
+
+        // 영속성 컨텍스트의 TeamStat 은 SQL 로 갱신된 값과 다를 수 있으니 DTO 로 읽는다
+        Map<Long, TeamStatDto> stored = new HashMap<>();
+        for (TeamStatDto stat : teamStatRepository.findTeamStats()) {
+            stored.put(stat.getTeamId(), stat);
+        }
+
+        List<Drift> drifts = new ArrayList<>();
+        for (Drift expected : actual.values()) {
+            TeamStatDto stat = stored.get(expected.getTeamId());
+            if (stat != null && expected.matches(stat)) {
+                continue;
+            }
+            drifts.add(expected);
+            log.warn("team_stat drift. expected={}, stored={}", expected, stat);
+        }
+        if (repair && !drifts.isEmpty()) {
+            repair(drifts.stream().map(Drift::getTeamId).collect(Collectors.toList()));
+        }
+        return drifts;
+    }
+
+    // 비교할 때 읽은 값으로 덮어쓰면 그 사이 리스너가 커밋한 증감이 사라진다.
+    // member 에서 다시 집계해 한 문장으로 쓰므로 team_stat 행 잠금 아래에서 그 시점의 실제 값이 들어간다
+    private void repair(List<Long> teamIds) {
+        em.createNativeQuery(MemberCsvImporter.RECOMPUTE_TEAM_STAT)
+                .setParameter("teamIds", teamIds)
+                .executeUpdate();
+    }
+
+    @Data
+    public static class Drift {
+
+        private final Long teamId;
+        private long memberCount;
+        private long ageSum;
+        private Integer ageMin;
+        private Integer ageMax;
+
+        boolean matches(TeamStatDto stat) {
+            return stat.getMemberCount() == memberCount
+                    && stat.getAgeSum() == ageSum
+                    && Objects.equals(stat.getAgeMin(), ageMin)
+                    && Objects.equals(stat.getAgeMax(), ageMax);
+        }
+    }
+}
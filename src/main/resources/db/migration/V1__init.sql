@@ -0,0 +1,33 @@
+-- ddl-auto: create 가 만들던 스키마 (Hibernate 5.6 H2Dialect 기준)
+create sequence hibernate_sequence start with 1 increment by 1;
+
+create table team (
+    id      bigint       not null,
+    name    varchar(255),
+    version bigint       not null,
+    primary key (id)
+);
+
+create table member (
+    member_id bigint       not null,
+    age       integer      not null,
+    username  varchar(255),
+    version   bigint       not null,
+    team_id   bigint,
+    primary key (member_id)
+);
+
+create table team_stat (
+    team_id      bigint  not null,
+    age_max      integer,
+    age_min      integer,
+    age_sum      bigint  not null,
+    member_count bigint  not null,
+    primary key (team_id)
+);
+
+create index idx_member_username on member (username);
+create index idx_member_age on member (age);
+create index idx_team_name on team (name);
+
+alter table member add constraint fk_member_team foreign key (team_id) references team (id);
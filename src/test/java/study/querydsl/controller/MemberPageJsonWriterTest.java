@@ -0,0 +1,102 @@
+package study.querydsl.controller;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.ByteArrayOutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import study.querydsl.dto.MemberSearchCond;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.repository.MemberColumnsRepository;
+import study.querydsl.repository.MemberColumnsRepository.MemberRowHandler;
+
+class MemberPageJsonWriterTest {
+
+    static final int PAGE_SIZE = 20;
+    static final int TOTAL = 100;
+
+    ObjectMapper objectMapper = new ObjectMapper();
+    MemberColumnsRepository repository = mock(MemberColumnsRepository.class);
+    MemberPageJsonWriter writer = new MemberPageJsonWriter(repository, objectMapper);
+    List<MemberTeamDto> page = new ArrayList<>();
+
+    @BeforeEach
+    void init() {
+        for (int i = 1; i <= PAGE_SIZE; i++) {
+            page.add(new MemberTeamDto((long) i, "member" + i, i, (long) i % 2, "team" + i % 2));
+        }
+        doAnswer(invocation -> {
+            MemberRowHandler handler = invocation.getArgument(2);
+            for (MemberTeamDto dto : page) {
+                handler.row(dto.getMemberId(), dto.getUsername(), dto.getAge(), true, dto.getTeamId(),
+                        dto.getTeamName());
+            }
+            return page.size();
+        }).when(repository).streamPage(any(), any(), any());
+        when(repository.count(any())).thenReturn((long) TOTAL);
+    }
+
+    @Test
+    void writesCompactEnvelope() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writer.writeTo(out, new MemberSearchCond(), PageRequest.of(0, PAGE_SIZE));
+
+        JsonNode json = objectMapper.readTree(out.toByteArray());
+        assertThat(json.fieldNames()).toIterable().containsExactly("content", "size", "total", "nextCursor");
+        assertThat(json.get("content").get(0).get("username").asText()).isEqualTo("member1");
+        assertThat(json.get("size").asInt()).isEqualTo(PAGE_SIZE);
+        assertThat(json.get("total").asLong()).isEqualTo(TOTAL);
+        assertThat(json.get("nextCursor").asInt()).isEqualTo(1);
+    }
+
+    @Test
+    void smallerThanPageImpl() throws Exception { // PageImpl 직렬화와 응답 크기 비교
+        PageRequest pageRequest = PageRequest.of(0, PAGE_SIZE);
+        PageImpl<MemberTeamDto> pageImpl = new PageImpl<>(page, pageRequest, TOTAL);
+
+        int pageImplBytes = objectMapper.writeValueAsBytes(pageImpl).length;
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writer.writeTo(out, new MemberSearchCond(), pageRequest);
+
+        System.out.println("bytes. pageImpl = " + pageImplBytes + ", compact = " + out.size());
+        assertThat(out.size()).isLessThan(pageImplBytes);
+    }
+
+    // CPU 시간은 JIT/부하에 따라 흔들리므로 기본 test 에서 빼고 ./gradlew benchmark 로만 돌린다
+    @Test
+    @Tag("benchmark")
+    void cpuAgainstPageImpl() throws Exception { // PageImpl 직렬화와 CPU 비교
+        PageRequest pageRequest = PageRequest.of(0, PAGE_SIZE);
+        PageImpl<MemberTeamDto> pageImpl = new PageImpl<>(page, pageRequest, TOTAL);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        int iterations = 20_000;
+        long start = bean.getCurrentThreadCpuTime();
+        for (int i = 0; i < iterations; i++) {
+            objectMapper.writeValueAsBytes(pageImpl);
+        }
+        long pageImplCpu = bean.getCurrentThreadCpuTime() - start;
+        start = bean.getCurrentThreadCpuTime();
+        for (int i = 0; i < iterations; i++) {
+            out.reset();
+            writer.writeTo(out, new MemberSearchCond(), pageRequest);
+        }
+        long compactCpu = bean.getCurrentThreadCpuTime() - start;
+
+        System.out.println("cpu ns/op. pageImpl = " + pageImplCpu / iterations + ", compact = " + compactCpu / iterations);
+    }
+}
@@ -0,0 +1,75 @@
+package study.querydsl.controller;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+import org.springframework.web.server.ResponseStatusException;
+
+class MemberQueryGuardTest {
+
+    MemberQueryGuard guard = new MemberQueryGuard(100);
+
+    @Test
+    void capsPageSize() {
+        MultiValueMap<String, String> params = new LinkedMultiValueMap<>();
+        params.add("username", "member*");
+        params.add("size", "5000");
+
+        Pageable pageable = guard.check(params, PageRequest.of(2, 5000));
+
+        assertThat(pageable.getPageSize()).isEqualTo(100);
+        assertThat(pageable.getPageNumber()).isEqualTo(2);
+    }
+
+    @Test
+    void rejectsUnindexablePredicates() {
+        MultiValueMap<String, String> leadingWildcard = new LinkedMultiValueMap<>();
+        leadingWildcard.add("username", "*ber1");
+        MultiValueMap<String, String> unknown = new LinkedMultiValueMap<>();
+        unknown.add("id", "1");
+
+        assertThatThrownBy(() -> guard.check(leadingWildcard, PageRequest.of(0, 10)))
+                .isInstanceOf(ResponseStatusException.class);
+        assertThatThrownBy(() -> guard.check(unknown, PageRequest.of(0, 10)))
+                .isInstanceOf(ResponseStatusException.class);
+        // 거절한 요청은 shape 캐시를 늘리지 않는다
+        assertThat(guard.shapeHits()).isEmpty();
+    }
+
+    @Test
+    void sameShapeSharesOneEntry() {
+        MultiValueMap<String, String> first = new LinkedMultiValueMap<>();
+        first.add("age", "10");
+        first.add("age", "20");
+        first.add("team.name", "teamA");
+        MultiValueMap<String, String> second = new LinkedMultiValueMap<>();
+        second.add("team.name", "teamB");
+        second.add("age", "30");
+        second.add("age", "40");
+
+        guard.check(first, PageRequest.of(0, 10));
+        guard.check(second, PageRequest.of(0, 10));
+
+        assertThat(guard.shapeHits()).containsEntry("age:between,team.name:eq", 2L);
+    }
+
+    @Test
+    void keepsWhitelistedSortOnly() {
+        MultiValueMap<String, String> params = new LinkedMultiValueMap<>();
+        params.add("age", "10");
+        params.add("sort", "password");
+        params.add("sort", "age,desc");
+
+        Pageable pageable = guard.check(params, PageRequest.of(0, 10, Sort.by(Sort.Order.asc("password"),
+                Sort.Order.desc("age"))));
+
+        assertThat(pageable.getSort()).isEqualTo(Sort.by(Sort.Order.desc("age")));
+        assertThat(guard.shapeHits()).containsEntry("age:eq,sort:age,desc", 1L);
+    }
+}
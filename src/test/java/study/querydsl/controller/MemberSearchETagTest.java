@@ -0,0 +1,109 @@
+package study.querydsl.controller;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.context.request.ServletWebRequest;
+import study.querydsl.dto.MemberSearchCond;
+import study.querydsl.repository.MemberChangeEvent.Kind;
+import study.querydsl.repository.MemberChangeEvent.Target;
+import study.querydsl.repository.MemberChangeFeed;
+import study.querydsl.repository.MemberChangeSubscriber;
+
+class MemberSearchETagTest {
+
+    MemberChangeFeed changeFeed;
+    MemberSearchETag eTag;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void init() {
+        ObjectProvider<MemberChangeSubscriber> subscribers = mock(ObjectProvider.class);
+        when(subscribers.orderedStream()).thenAnswer(invocation -> Stream.empty());
+        changeFeed = new MemberChangeFeed(subscribers);
+        eTag = new MemberSearchETag(changeFeed, 60);
+    }
+
+    @Test
+    void sameConditionSameTag() {
+        MemberSearchCond blank = new MemberSearchCond();
+        blank.setUsername("");
+        blank.setTeamName("teamA");
+        MemberSearchCond empty = new MemberSearchCond();
+        empty.setTeamName("teamA");
+
+        assertThat(eTag.of("v3", blank, PageRequest.of(0, 10), null))
+                .isEqualTo(eTag.of("v3", empty, PageRequest.of(0, 10), null))
+                .startsWith("W/\"");
+    }
+
+    @Test
+    void conditionPageAndSortChangeTag() {
+        MemberSearchCond cond = new MemberSearchCond();
+        String base = eTag.of("v3", cond, PageRequest.of(0, 10), null);
+
+        assertThat(eTag.of("v2", cond, PageRequest.of(0, 10), null)).isNotEqualTo(base);
+        assertThat(eTag.of("v3", cond, PageRequest.of(1, 10), null)).isNotEqualTo(base);
+        assertThat(eTag.of("v3", cond, PageRequest.of(0, 10, Sort.by("age")), null)).isNotEqualTo(base);
+        assertThat(eTag.of("v3", cond, Pageable.unpaged(), null)).isNotEqualTo(base);
+        cond.setAgeGoe(20);
+        assertThat(eTag.of("v3", cond, PageRequest.of(0, 10), null)).isNotEqualTo(base);
+    }
+
+    @Test
+    void committedChangeInvalidatesTag() {
+        MemberSearchCond cond = new MemberSearchCond();
+        String before = eTag.of("v1", cond, Pageable.unpaged(), null);
+
+        changeFeed.record(Target.MEMBER, Kind.BULK_UPDATED, List.of(1L), "member.age < 28");
+
+        assertThat(eTag.of("v1", cond, Pageable.unpaged(), null)).isNotEqualTo(before);
+    }
+
+    @Test
+    void tagExpiresAfterMaxAgeEvenWithoutChanges() {
+        MemberSearchCond cond = new MemberSearchCond();
+        String first = eTag.of("v1", cond, Pageable.unpaged(), null, 0);
+
+        assertThat(eTag.of("v1", cond, Pageable.unpaged(), null, 59_999)).isEqualTo(first);
+        assertThat(eTag.of("v1", cond, Pageable.unpaged(), null, 60_000)).isNotEqualTo(first);
+    }
+
+    @Test
+    void mediaTypeChangesTag() {
+        MemberSearchCond cond = new MemberSearchCond();
+        String json = eTag.of("v6", cond, Pageable.unpaged(), "application/json");
+
+        assertThat(eTag.of("v6", cond, Pageable.unpaged(), null)).isEqualTo(json);
+        assertThat(eTag.of("v6", cond, Pageable.unpaged(), "*/*")).isEqualTo(json);
+        assertThat(eTag.of("v6", cond, Pageable.unpaged(), "application/x-jackson-smile")).isNotEqualTo(json);
+        assertThat(eTag.of("v6", cond, Pageable.unpaged(), "application/cbor")).isNotEqualTo(json);
+        assertThat(MemberSearchETag.representation("application/json;q=0.5, application/cbor"))
+                .isEqualTo(new MediaType("application", "cbor"));
+    }
+
+    @Test
+    void matchingIfNoneMatchIsNotModified() {
+        String current = eTag.of("v1", new MemberSearchCond(), Pageable.unpaged(), null);
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/v1/members");
+        request.addHeader("If-None-Match", current);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        boolean notModified = new ServletWebRequest(request, response).checkNotModified(current);
+
+        assertThat(notModified).isTrue();
+        assertThat(response.getStatus()).isEqualTo(304);
+    }
+}
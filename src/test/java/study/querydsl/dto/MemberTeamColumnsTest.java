@@ -0,0 +1,59 @@
+package study.querydsl.dto;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class MemberTeamColumnsTest {
+
+    ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void serializesLikeDtoList() throws Exception {
+        MemberTeamColumns columns = MemberTeamColumns.builder(2)
+                .add(1L, "member1", 10, 100L, "teamA")
+                .add(2L, "member2", 20, 200L, "teamB")
+                .add(3L, "member3", 30, 100L, "teamA")
+                .addWithoutTeam(4L, "member4", 40)
+                .build();
+
+        assertThat(columns.teamCount()).isEqualTo(2);
+        assertThat(objectMapper.writeValueAsString(columns))
+                .isEqualTo(objectMapper.writeValueAsString(columns.toDtoList()));
+    }
+
+    @Test
+    void columnsRoundTripMatchesDtoList() throws Exception {
+        String[] usernames = new String[100];
+        for (int i = 0; i < usernames.length; i++) {
+            usernames[i] = "member" + i;
+        }
+        MemberTeamColumns.Builder builder = MemberTeamColumns.builder(16);
+        List<MemberTeamDto> expected = new ArrayList<>();
+        for (int i = 0; i < usernames.length; i++) {
+            long teamId = 1000 + (i % 4);
+            builder.add((long) i + 1000, usernames[i], i % 100, teamId, "team" + (i % 4));
+            expected.add(new MemberTeamDto((long) i + 1000, usernames[i], i % 100, teamId, "team" + (i % 4)));
+        }
+        MemberTeamColumns columns = builder.build();
+
+        assertThat(columns.size()).isEqualTo(100);
+        assertThat(columns.teamCount()).isEqualTo(4);
+        assertThat(columns.toDtoList()).isEqualTo(expected);
+    }
+
+    @Test
+    void teamIdIsNullWithoutTeam() {
+        MemberTeamColumns columns = MemberTeamColumns.builder(2)
+                .add(1L, "member1", 10, 100L, "teamA")
+                .addWithoutTeam(2L, "member2", 20)
+                .build();
+
+        assertThat(columns.getTeamId(0)).isEqualTo(100L);
+        assertThat(columns.getTeamId(1)).isNull();
+        assertThat(columns.getTeamName(1)).isNull();
+    }
+}
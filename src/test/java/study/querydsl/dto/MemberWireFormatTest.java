@@ -0,0 +1,116 @@
+package study.querydsl.dto;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileGenerator;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.util.zip.GZIPOutputStream;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+class MemberWireFormatTest {
+
+    static final int ROWS = 10_000;
+
+    ObjectMapper json = new ObjectMapper();
+    ObjectMapper smile = new ObjectMapper(SmileFactory.builder()
+            .enable(SmileGenerator.Feature.CHECK_SHARED_STRING_VALUES).build());
+    ObjectMapper cbor = new ObjectMapper(new CBORFactory());
+
+    @Test
+    void binaryFormatsCarrySameRows() throws Exception {
+        MemberTeamColumns columns = columns(100);
+        JsonNode expected = json.readTree(json.writeValueAsBytes(columns));
+
+        assertThat(smile.readTree(smile.writeValueAsBytes(columns))).isEqualTo(expected);
+        assertThat(cbor.readTree(cbor.writeValueAsBytes(columns))).isEqualTo(expected);
+    }
+
+    @Test
+    void columnarLayoutUsesTeamDictionary() throws Exception {
+        MemberTeamColumns columns = MemberTeamColumns.builder(4)
+                .add(1L, "member1", 10, 100L, "teamA")
+                .add(2L, "member2", 20, 200L, "teamB")
+                .add(3L, "member3", 30, 100L, "teamA")
+                .addWithoutTeam(4L, "member4", 40)
+                .build();
+
+        JsonNode node = json.readTree(json.writeValueAsBytes(new MemberTeamColumnar(columns)));
+
+        assertThat(node.get("size").asInt()).isEqualTo(4);
+        assertThat(node.get("memberId").toString()).isEqualTo("[1,2,3,4]");
+        assertThat(node.get("teamRef").toString()).isEqualTo("[0,1,0,-1]");
+        assertThat(node.get("teams").get("teamName").toString()).isEqualTo("[\"teamA\",\"teamB\"]");
+        assertThat(smile.readTree(smile.writeValueAsBytes(new MemberTeamColumnar(columns)))).isEqualTo(node);
+    }
+
+    @Test
+    void payloadSizes() throws Exception { // 10k row 를 형식별로 직렬화한 크기 비교
+        MemberTeamColumns columns = columns(ROWS);
+        MemberTeamColumnar columnar = new MemberTeamColumnar(columns);
+
+        long jsonRows = size("json rows", json, columns);
+        long smileRows = size("smile rows", smile, columns);
+        long cborRows = size("cbor rows", cbor, columns);
+        long jsonColumnar = size("json columnar", json, columnar);
+        long smileColumnar = size("smile columnar", smile, columnar);
+
+        assertThat(smileRows).isLessThan(jsonRows);
+        assertThat(cborRows).isLessThan(jsonRows);
+        assertThat(jsonColumnar).isLessThan(jsonRows);
+        assertThat(smileColumnar).isLessThan(smileRows);
+    }
+
+    // 속도는 JIT/부하에 따라 흔들리므로 기본 test 에서 빼고 ./gradlew benchmark 로만 돌린다
+    @Test
+    @Tag("benchmark")
+    void throughputBenchmark() throws Exception { // 10k row 를 형식별로 직렬화하는 속도 비교
+        MemberTeamColumns columns = columns(ROWS);
+        MemberTeamColumnar columnar = new MemberTeamColumnar(columns);
+
+        throughput("json rows", json, columns);
+        throughput("smile rows", smile, columns);
+        throughput("cbor rows", cbor, columns);
+        throughput("json columnar", json, columnar);
+        throughput("smile columnar", smile, columnar);
+    }
+
+    private long size(String name, ObjectMapper mapper, Object value) throws Exception {
+        byte[] bytes = mapper.writeValueAsBytes(value);
+        ByteArrayOutputStream gzipped = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(gzipped)) {
+            gzip.write(bytes);
+        }
+        System.out.println(name + ": bytes = " + bytes.length + ", gzip = " + gzipped.size());
+        return bytes.length;
+    }
+
+    private void throughput(String name, ObjectMapper mapper, Object value) throws Exception {
+        for (int i = 0; i < 20; i++) { // 워밍업
+            mapper.writeValue(OutputStream.nullOutputStream(), value);
+        }
+        int iterations = 50;
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            mapper.writeValue(OutputStream.nullOutputStream(), value);
+        }
+        System.out.println(name + ": us/op = " + (System.nanoTime() - start) / 1000 / iterations);
+    }
+
+    private static MemberTeamColumns columns(int rows) {
+        MemberTeamColumns.Builder builder = MemberTeamColumns.builder(rows);
+        for (int i = 0; i < rows; i++) {
+            if (i % 50 == 0) {
+                builder.addWithoutTeam(i + 1000L, "member" + i, i % 100);
+            } else {
+                builder.add(i + 1000L, "member" + i, i % 100, 1000 + (i % 4), "team" + (i % 4));
+            }
+        }
+        return builder.build();
+    }
+}
@@ -0,0 +1,112 @@
+package study.querydsl.entity;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import javax.persistence.EntityManager;
+import org.hibernate.Hibernate;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+
+@Transactional
+@SpringBootTest
+class TeamMembershipTest {
+
+    static final int LARGE_TEAM = 5000;
+
+    @Autowired
+    EntityManager em;
+
+    Long largeTeamId;
+    Long otherTeamId;
+
+    @BeforeEach
+    void before() {
+        Team large = new Team("large");
+        Team other = new Team("other");
+        em.persist(large);
+        em.persist(other);
+        for (int i = 0; i < LARGE_TEAM; i++) {
+            em.persist(new Member("member" + i, i % 100, large));
+            if (i % 500 == 0) {
+                em.flush();
+                em.clear();
+                large = em.find(Team.class, large.getId());
+            }
+        }
+        em.flush();
+        em.clear();
+        largeTeamId = large.getId();
+        otherTeamId = other.getId();
+    }
+
+    @Test
+    void joiningLargeTeamDoesNotLoadMembers() {
+        Team large = em.find(Team.class, largeTeamId);
+
+        Member joined = new Member("joined", 20, large);
+        em.persist(joined);
+
+        assertThat(Hibernate.isInitialized(large.getMembers())).isFalse();
+
+        em.flush();
+        em.clear();
+        assertThat(em.find(Team.class, largeTeamId).getMembers()).hasSize(LARGE_TEAM + 1);
+    }
+
+    @Test
+    void joiningTeamReferenceDoesNotLoadTeam() {
+        Team reference = em.getReference(Team.class, largeTeamId);
+
+        em.persist(new Member("joined", 20, reference));
+
+        assertThat(Hibernate.isInitialized(reference)).isFalse();
+    }
+
+    @Test
+    void leavingLargeTeamDoesNotLoadMembers() {
+        Member member = em.createQuery("select m from Member m join fetch m.team where m.team.id = :teamId",
+                        Member.class)
+                .setParameter("teamId", largeTeamId)
+                .setMaxResults(1)
+                .getSingleResult();
+        Team large = member.getTeam();
+        Team other = em.find(Team.class, otherTeamId);
+        other.getMembers().size(); // 작은 팀은 로딩해 둔다
+
+        member.changeTeam(other);
+
+        assertThat(Hibernate.isInitialized(large.getMembers())).isFalse();
+        assertThat(other.getMembers()).containsExactly(member);
+
+        em.flush();
+        em.clear();
+        assertThat(em.find(Team.class, largeTeamId).getMembers()).hasSize(LARGE_TEAM - 1);
+        assertThat(em.find(Team.class, otherTeamId).getMembers()).hasSize(1);
+    }
+
+    @Test
+    void loadedCollectionStaysConsistent() {
+        Team other = em.find(Team.class, otherTeamId);
+        other.getMembers().size();
+
+        Member member = new Member("member", 10, other);
+
+        assertThat(other.getMembers()).containsExactly(member);
+    }
+
+    @Test
+    void leavingTeamWithNull() {
+        Team other = em.find(Team.class, otherTeamId);
+        other.getMembers().size();
+        Member member = new Member("member", 10, other);
+        em.persist(member);
+
+        member.changeTeam(null);
+
+        assertThat(member.getTeam()).isNull();
+        assertThat(other.getMembers()).isEmpty();
+    }
+}
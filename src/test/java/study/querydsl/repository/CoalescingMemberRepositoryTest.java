@@ -0,0 +1,35 @@
+package study.querydsl.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import study.querydsl.dto.MemberSearchCond;
+import study.querydsl.dto.MemberTeamDto;
+
+class CoalescingMemberRepositoryTest {
+
+    @Test
+    void cachedResultIsCopiedPerCaller() {
+        MemberRepository memberRepository = mock(MemberRepository.class);
+        when(memberRepository.search(any())).thenReturn(
+                new ArrayList<>(List.of(new MemberTeamDto(1L, "member1", 10, null, null))));
+        CoalescingMemberRepository repository = new CoalescingMemberRepository(memberRepository,
+                new SimpleMeterRegistry(), 60_000);
+
+        List<MemberTeamDto> first = repository.search(new MemberSearchCond());
+        first.get(0).setUsername("changed");
+        first.clear();
+
+        List<MemberTeamDto> second = repository.search(new MemberSearchCond());
+        assertThat(second).extracting("username").containsExactly("member1");
+        verify(memberRepository, times(1)).search(any());
+    }
+}
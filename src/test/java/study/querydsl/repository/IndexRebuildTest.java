@@ -0,0 +1,47 @@
+package study.querydsl.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.function.BooleanSupplier;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import study.querydsl.repository.MemberChangeEvent.Kind;
+import study.querydsl.repository.MemberChangeEvent.Target;
+
+@SpringBootTest(properties = {"member.search.index.enabled=true", "member.search.index.rebuild-delay-ms=0",
+        "member.search.username-index.enabled=true", "member.search.username-index.rebuild-delay-ms=0"})
+class IndexRebuildTest {
+
+    @Autowired
+    MemberChangeFeed changeFeed;
+
+    @Autowired
+    MemberSearchIndex memberSearchIndex;
+
+    @Autowired
+    UsernameIndex usernameIndex;
+
+    @Test
+    void bulkChangeWithoutIdsRebuildsIndexes() throws InterruptedException {
+        assertThat(memberSearchIndex.isReady()).isTrue();
+        assertThat(usernameIndex.isReady()).isTrue();
+
+        // 트랜잭션 밖이라 바로 구독자에게 전달된다. ids 가 없으니 둘 다 invalidate 된다
+        changeFeed.record(Target.MEMBER, Kind.BULK_UPDATED, null, "test");
+
+        assertThat(eventually(memberSearchIndex::isReady)).isTrue();
+        assertThat(eventually(usernameIndex::isReady)).isTrue();
+    }
+
+    private static boolean eventually(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) {
+                return false;
+            }
+            Thread.sleep(20);
+        }
+        return true;
+    }
+}
@@ -0,0 +1,61 @@
+package study.querydsl.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static study.querydsl.entity.QMember.member;
+
+import java.util.List;
+import javax.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+@Transactional
+@SpringBootTest
+class MemberBulkRepositoryTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    MemberBulkRepository memberBulkRepository;
+
+    @Autowired
+    MemberChangeFeed changeFeed;
+
+    @BeforeEach
+    void before() {
+        Team teamA = new Team("teamA");
+        em.persist(teamA);
+        em.persist(new Member("member1", 10, teamA));
+        em.persist(new Member("member2", 20, teamA));
+        em.persist(new Member("member3", 30, teamA));
+        em.persist(new Member("member4", 40, teamA));
+    }
+
+    @Test
+    void bulkUpdate() {
+        long sequence = changeFeed.lastSequence();
+
+        long count = memberBulkRepository.updateMembers(member.age.lt(28),
+                clause -> clause.set(member.username, "비회원"));
+
+        assertThat(count).isEqualTo(2);
+        List<Member> result = em.createQuery("select m from Member m order by m.age", Member.class)
+                .getResultList();
+        assertThat(result).extracting("username").containsExactly("비회원", "비회원", "member3", "member4");
+        // 커밋 전이므로 아직 전달되지 않는다
+        assertThat(changeFeed.lastSequence()).isEqualTo(sequence);
+    }
+
+    @Test
+    void bulkDelete() {
+        long count = memberBulkRepository.deleteMembers(member.age.gt(18));
+
+        assertThat(count).isEqualTo(3);
+        assertThat(memberBulkRepository.deleteMembers(member.age.gt(18))).isZero();
+    }
+}
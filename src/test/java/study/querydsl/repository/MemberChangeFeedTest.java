@@ -0,0 +1,79 @@
+package study.querydsl.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import study.querydsl.repository.MemberChangeEvent.Kind;
+import study.querydsl.repository.MemberChangeEvent.Target;
+
+class MemberChangeFeedTest {
+
+    List<MemberChangeEvent> received = new ArrayList<>();
+    MemberChangeFeed feed;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void init() {
+        ObjectProvider<MemberChangeSubscriber> subscribers = mock(ObjectProvider.class);
+        when(subscribers.orderedStream()).thenAnswer(invocation -> Stream.of(
+                (MemberChangeSubscriber) event -> {
+                    throw new IllegalStateException("broken subscriber");
+                },
+                (MemberChangeSubscriber) received::add));
+        feed = new MemberChangeFeed(subscribers);
+    }
+
+    @AfterEach
+    void clear() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void publishesImmediatelyWithoutTransaction() {
+        feed.record(Target.MEMBER, Kind.SAVED, List.of(1L), null);
+        feed.record(Target.TEAM, Kind.BULK_UPDATED, null, "team.name = teamA");
+
+        assertThat(received).extracting("sequence").containsExactly(1L, 2L);
+        assertThat(received.get(1).isBulk()).isTrue();
+        assertThat(received.get(1).isIdsKnown()).isFalse();
+        assertThat(feed.since(1)).extracting("kind").containsExactly(Kind.BULK_UPDATED);
+    }
+
+    @Test
+    void publishesOnlyAfterCommit() {
+        TransactionSynchronizationManager.initSynchronization();
+        feed.record(Target.MEMBER, Kind.BULK_DELETED, List.of(1L, 2L), "member.age > 18");
+
+        assertThat(received).isEmpty();
+        assertThat(feed.lastSequence()).isZero();
+
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        synchronizations.forEach(TransactionSynchronization::afterCommit);
+
+        assertThat(received).hasSize(1);
+        assertThat(received.get(0).getIds()).containsExactly(1L, 2L);
+    }
+
+    @Test
+    void rolledBackChangeIsNotPublished() {
+        TransactionSynchronizationManager.initSynchronization();
+        feed.record(Target.MEMBER, Kind.SAVED, List.of(1L), null);
+
+        TransactionSynchronizationManager.getSynchronizations()
+                .forEach(s -> s.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+
+        assertThat(received).isEmpty();
+    }
+}
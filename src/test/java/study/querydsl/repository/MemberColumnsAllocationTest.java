@@ -0,0 +1,97 @@
+package study.querydsl.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import javax.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.dto.MemberSearchCond;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+// 할당량은 JIT/TLAB 상태에 따라 흔들리므로 기본 test 에서 빼고 ./gradlew benchmark 로만 돌린다
+@Tag("benchmark")
+@Transactional
+@SpringBootTest
+class MemberColumnsAllocationTest {
+
+    static final int ROWS = 10_000;
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    MemberRepository memberRepository;
+
+    @Autowired
+    MemberColumnsRepository memberColumnsRepository;
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    MemberSearchCond cond = new MemberSearchCond();
+
+    @BeforeEach
+    void before() {
+        Team[] teams = new Team[4];
+        for (int i = 0; i < teams.length; i++) {
+            teams[i] = new Team("team" + i);
+            em.persist(teams[i]);
+        }
+        for (int i = 0; i < ROWS; i++) {
+            em.persist(new Member("columnsBench" + i, i % 100, i % 10 == 0 ? null : teams[i % teams.length]));
+            if (i % 1000 == 0) {
+                em.flush();
+                em.clear();
+            }
+        }
+        em.flush();
+        em.clear();
+        cond.setUsernameContains("columnsbench");
+    }
+
+    @Test
+    void allocationAgainstDtoSearch() throws Exception { // 같은 row 를 두 경로로 읽고 직렬화할 때 할당량 비교
+        assertThat(memberColumnsRepository.search(cond).toDtoList())
+                .containsExactlyInAnyOrderElementsOf(memberRepository.search(cond));
+
+        for (int i = 0; i < 5; i++) { // 워밍업
+            searchAndWriteDtoList();
+            searchAndWriteColumns();
+        }
+
+        long dtoBytes = measure(this::searchAndWriteDtoList);
+        long columnBytes = measure(this::searchAndWriteColumns);
+        System.out.println("allocated bytes. MemberRepository.search = " + dtoBytes
+                + ", MemberColumnsRepository.search = " + columnBytes);
+
+        assertThat(columnBytes).isLessThan(dtoBytes);
+    }
+
+    private void searchAndWriteDtoList() throws Exception {
+        objectMapper.writeValue(OutputStream.nullOutputStream(), memberRepository.search(cond));
+    }
+
+    private void searchAndWriteColumns() throws Exception {
+        objectMapper.writeValue(OutputStream.nullOutputStream(), memberColumnsRepository.search(cond));
+    }
+
+    private static long measure(ThrowingRunnable runnable) throws Exception {
+        com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        long before = bean.getThreadAllocatedBytes(threadId);
+        runnable.run();
+        return bean.getThreadAllocatedBytes(threadId) - before;
+    }
+
+    interface ThrowingRunnable {
+        void run() throws Exception;
+    }
+}
@@ -0,0 +1,83 @@
+package study.querydsl.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import javax.persistence.EntityManager;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.dto.CountStrategy;
+import study.querydsl.dto.MemberCountedPage;
+import study.querydsl.dto.MemberSearchCond;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+@Transactional
+@SpringBootTest(properties = "member.search.count.cap=5")
+class MemberCountedPageTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    MemberRepository memberRepository;
+
+    @Test
+    void searchPageCounted() { // count.cap 은 properties 에서 5
+        Team teamA = new Team("teamA");
+        Team teamB = new Team("teamB");
+        em.persist(teamA);
+        em.persist(teamB);
+        em.persist(new Member("member1", 10, teamA));
+        em.persist(new Member("member2", 20, teamA));
+        em.persist(new Member("member3", 30, teamA));
+        em.persist(new Member("member4", 40, teamA));
+        em.persist(new Member("member5", 20, teamB));
+        em.persist(new Member("member6", 30, teamB));
+        em.persist(new Member("member7", 50));
+        em.flush();
+
+        MemberSearchCond cond = new MemberSearchCond();
+        PageRequest first = PageRequest.of(0, 2);
+
+        MemberCountedPage none = memberRepository.searchPageCounted(cond, first, CountStrategy.NONE);
+        assertThat(none.getCount()).isEqualTo(CountStrategy.NONE);
+        assertThat(none.getTotal()).isNull();
+        assertThat(none.isHasNext()).isTrue();
+        assertThat(none.getContent()).extracting("username").containsExactly("member1", "member2");
+
+        assertThat(memberRepository.searchPageCounted(cond, first, CountStrategy.EXACT).getTotal()).isEqualTo(7);
+
+        MemberCountedPage capped = memberRepository.searchPageCounted(cond, first, CountStrategy.CAPPED);
+        assertThat(capped.getTotal()).isEqualTo(5);
+        assertThat(capped.isTotalCapped()).isTrue();
+
+        MemberSearchCond teamA4 = new MemberSearchCond();
+        teamA4.setTeamName("teamA");
+        teamA4.setUsernameContains("MEMBER");
+        MemberCountedPage cappedTeam = memberRepository.searchPageCounted(teamA4, first, CountStrategy.CAPPED);
+        assertThat(cappedTeam.getTotal()).isEqualTo(4);
+        assertThat(cappedTeam.isTotalCapped()).isFalse();
+
+        // 마지막 페이지면 전략과 상관없이 정확한 값
+        MemberCountedPage last = memberRepository.searchPageCounted(cond, PageRequest.of(3, 2), CountStrategy.NONE);
+        assertThat(last.getCount()).isEqualTo(CountStrategy.EXACT);
+        assertThat(last.getTotal()).isEqualTo(7);
+        assertThat(last.getNextCursor()).isNull();
+
+        // teamA 나이 10~40 에 4명 -> 25 이상은 16/31 * 4 = 2명으로 추정
+        cond.setTeamName("teamA");
+        cond.setAgeGoe(25);
+        MemberCountedPage estimated = memberRepository.searchPageCounted(cond, PageRequest.of(0, 1),
+                CountStrategy.ESTIMATED);
+        assertThat(estimated.getCount()).isEqualTo(CountStrategy.ESTIMATED);
+        assertThat(estimated.getTotal()).isEqualTo(2);
+
+        MemberSearchCond byUsername = new MemberSearchCond();
+        byUsername.setUsernameContains("member");
+        assertThat(memberRepository.searchPageCounted(byUsername, first, CountStrategy.ESTIMATED).getCount())
+                .isEqualTo(CountStrategy.CAPPED);
+    }
+}
@@ -0,0 +1,91 @@
+package study.querydsl.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.List;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceUnitUtil;
+import org.hibernate.Hibernate;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.dto.MemberSearchCond;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.repository.MemberGraphRepository.Association;
+
+@Transactional
+@SpringBootTest
+class MemberGraphRepositoryTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    MemberGraphRepository memberGraphRepository;
+
+    PersistenceUnitUtil util;
+
+    @BeforeEach
+    void before() {
+        Team teamA = new Team("teamA");
+        Team teamB = new Team("teamB");
+        em.persist(teamA);
+        em.persist(teamB);
+        em.persist(new Member("member1", 10, teamA));
+        em.persist(new Member("member2", 20, teamA));
+        em.persist(new Member("member3", 30, teamB));
+        em.persist(new Member("member4", 40, teamB));
+        em.persist(new Member("member5", 50));
+        em.flush();
+        em.clear();
+        util = em.getEntityManagerFactory().getPersistenceUnitUtil();
+    }
+
+    @Test
+    void withoutAssociationsTeamStaysLazy() {
+        List<Member> result = memberGraphRepository.findAll(new MemberSearchCond());
+
+        assertThat(result).hasSize(5);
+        assertThat(result.get(0).getTeam()).isNotNull();
+        assertThat(Hibernate.isInitialized(result.get(0).getTeam())).isFalse();
+    }
+
+    @Test
+    void fetchTeam() {
+        List<Member> result = memberGraphRepository.findAll(new MemberSearchCond(), Association.TEAM);
+
+        assertThat(util.isLoaded(result.get(0).getTeam())).isTrue();
+        assertThat(util.isLoaded(result.get(0).getTeam(), "members")).isFalse();
+    }
+
+    @Test
+    void pageWithTeamMembers() {
+        MemberSearchCond cond = new MemberSearchCond();
+        cond.setAgeGoe(20);
+
+        Page<Member> page = memberGraphRepository.findPage(cond, PageRequest.of(0, 2),
+                Association.fromPath("team.members"));
+
+        assertThat(page.getTotalElements()).isEqualTo(4);
+        assertThat(page.getContent()).extracting("username").containsExactly("member2", "member3");
+        Team teamA = page.getContent().get(0).getTeam();
+        Team teamB = page.getContent().get(1).getTeam();
+        assertThat(Hibernate.isInitialized(teamA)).isTrue();
+        assertThat(Hibernate.isInitialized(teamA.getMembers())).isTrue();
+        assertThat(Hibernate.isInitialized(teamB.getMembers())).isTrue();
+        // 페이지 밖의 member1 도 컬렉션에 들어 있다
+        assertThat(teamA.getMembers()).extracting("username").containsExactlyInAnyOrder("member1", "member2");
+    }
+
+    @Test
+    void unknownPath() {
+        assertThatThrownBy(() -> Association.fromPath("team.owner"))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -1,8 +1,12 @@
 package study.querydsl.repository;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
+import java.util.Arrays;
 import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
 import javax.persistence.EntityManager;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -115,4 +119,48 @@ class MemberJpaRepositoryTest {
         assertThat(result.size()).isEqualTo(1);
         assertThat(result).extracting("username").containsExactly("member1");
     }
-}
\ No newline at end of file
+
+    @Test
+    void findAllByIds() {
+        Team teamA = new Team("teamA");
+        em.persist(teamA);
+        Member member1 = new Member("member1", 10, teamA);
+        Member member2 = new Member("member2", 20, teamA);
+        Member member3 = new Member("member3", 30);
+        em.persist(member1);
+        em.persist(member2);
+        em.persist(member3);
+        em.flush();
+        em.clear();
+
+        Member managed = em.find(Member.class, member2.getId());
+        List<Long> ids = Arrays.asList(member3.getId(), -1L, member2.getId(), null, member1.getId(), member3.getId());
+
+        List<Member> members = memberJpaRepository.findAllByIds(ids);
+        assertThat(members).extracting("username").containsExactly("member3", "member2", "member1", "member3");
+        assertThat(members.get(1)).isSameAs(managed);
+
+        List<MemberTeamDto> dtos = memberJpaRepository.findAllDtoByIds(ids);
+        assertThat(dtos).extracting("username").containsExactly("member3", "member2", "member1", "member3");
+        assertThat(dtos.get(1).getTeamName()).isEqualTo("teamA");
+        assertThat(dtos.get(0).getTeamId()).isNull();
+    }
+
+    @Test
+    void inClauseIsPaddedToPowerOfTwo() {
+        assertThat(MemberJpaRepository.paddedSize(1, 512)).isEqualTo(1);
+        assertThat(MemberJpaRepository.paddedSize(3, 512)).isEqualTo(4);
+        assertThat(MemberJpaRepository.paddedSize(129, 512)).isEqualTo(256);
+        assertThat(MemberJpaRepository.paddedSize(512, 512)).isEqualTo(512);
+        assertThat(MemberJpaRepository.paddedSize(70, 100)).isEqualTo(100);
+
+        List<Long> ids = LongStream.rangeClosed(1, 1030).boxed().collect(Collectors.toList());
+        assertThat(MemberJpaRepository.chunks(ids, 512)).extracting(List::size).containsExactly(512, 512, 8);
+    }
+
+    @Test
+    void nonPositiveMaxInSizeIsRejected() {
+        assertThatThrownBy(() -> new MemberJpaRepository(em, null, null, null, 0))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -9,8 +9,10 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
 import org.springframework.transaction.annotation.Transactional;
 import study.querydsl.dto.MemberSearchCond;
+import study.querydsl.dto.MemberSearchShapeStat;
 import study.querydsl.dto.MemberTeamDto;
 import study.querydsl.entity.Member;
 import study.querydsl.entity.QMember;
@@ -26,6 +28,9 @@ class MemberRepositoryTest {
     @Autowired
     MemberRepository memberRepository;
 
+    @Autowired
+    MemberSearchMetrics searchMetrics;
+
     @Test
     void basicTest() { // 순수 jpa 활용 구현
         Member member1 = new Member("member1", 10);
@@ -105,6 +110,73 @@ class MemberRepositoryTest {
 
     }
 
+    @Test
+    void searchPageComplexSorted() {
+        Team teamA = new Team("teamA");
+        Team teamB = new Team("teamB");
+        em.persist(teamA);
+        em.persist(teamB);
+
+        em.persist(new Member("member1", 10, teamB));
+        em.persist(new Member("member2", 20, teamA));
+        em.persist(new Member("member3", 20, teamB));
+        em.persist(new Member("member4", 40, teamA));
+
+        MemberSearchCond cond = new MemberSearchCond();
+
+        Page<MemberTeamDto> byAge = memberRepository.searchPageComplex(cond,
+                PageRequest.of(0, 3, Sort.by("age").descending()));
+        assertThat(byAge).extracting("username").containsExactly("member4", "member3", "member2");
+
+        // 화이트리스트에 없는 키(teamName 포함)는 무시되고 username 으로 정렬된다
+        Page<MemberTeamDto> byUsername = memberRepository.searchPageComplex(cond,
+                PageRequest.of(0, 4, Sort.by(Sort.Order.asc("password"), Sort.Order.asc("teamName"),
+                        Sort.Order.desc("username"))));
+        assertThat(byUsername).extracting("username").containsExactly("member4", "member3", "member2", "member1");
+    }
+
+
+    @Test
+    void searchBatch() {
+        Team teamA = new Team("teamA");
+        Team teamB = new Team("teamB");
+        em.persist(teamA);
+        em.persist(teamB);
+        em.persist(new Member("member1", 10, teamA));
+        em.persist(new Member("member2", 20, teamA));
+        em.persist(new Member("member3", 30, teamB));
+        em.persist(new Member("member4", 40, teamB));
+
+        MemberSearchCond byTeamA = new MemberSearchCond();
+        byTeamA.setTeamName("teamA");
+        MemberSearchCond byTeamB = new MemberSearchCond();
+        byTeamB.setTeamName("teamB");
+        MemberSearchCond olderThan15 = new MemberSearchCond(); // teamA, teamB 결과와 겹친다
+        olderThan15.setAgeGoe(15);
+        olderThan15.setAgeLoe(35);
+        MemberSearchCond nobody = new MemberSearchCond();
+        nobody.setUsernameContains("MEMBER9");
+
+        String batchShape = "usernameContains+teamName+ageGoe+ageLoe";
+        long recorded = batchSamples(batchShape);
+        List<List<MemberTeamDto>> result = memberRepository.searchBatch(
+                List.of(byTeamA, byTeamB, olderThan15, nobody));
+
+        assertThat(batchSamples(batchShape)).isEqualTo(recorded + 1); // 조건마다가 아니라 쿼리 한 번에 한 건
+        assertThat(result).hasSize(4);
+        assertThat(result.get(0)).extracting("username").containsExactly("member1", "member2");
+        assertThat(result.get(1)).extracting("username").containsExactly("member3", "member4");
+        assertThat(result.get(2)).extracting("username").containsExactly("member2", "member3");
+        assertThat(result.get(3)).isEmpty();
+        assertThat(memberRepository.searchBatch(List.of(new MemberSearchCond(), byTeamB)).get(0)).hasSize(4);
+    }
+
+    private long batchSamples(String shape) {
+        return searchMetrics.stats().stream()
+                .filter(s -> s.getMethod().equals("searchBatch") && s.getShape().equals(shape))
+                .mapToLong(MemberSearchShapeStat::getCount)
+                .sum();
+    }
 
     @Test
     void queryDslPredicateExecutorTest() {
@@ -133,5 +205,42 @@ class MemberRepositoryTest {
 
     }
 
+    @Test
+    void searchByPredicate() {
+        Team teamA = new Team("teamA");
+        Team teamB = new Team("teamB");
+        em.persist(teamA);
+        em.persist(teamB);
+
+        em.persist(new Member("member1", 10, teamA));
+        em.persist(new Member("member2", 20, teamA));
+        em.persist(new Member("member3", 30, teamB));
+        em.persist(new Member("member4", 40, teamB));
+
+        QMember member = QMember.member;
+        Page<MemberTeamDto> result = memberRepository.searchByPredicate(
+                member.age.between(20, 40).and(member.team.name.eq("teamB")), PageRequest.of(0, 10));
+
+        assertThat(result.getTotalElements()).isEqualTo(2);
+        assertThat(result).extracting("username").containsExactly("member3", "member4");
+        assertThat(result).extracting("teamName").containsOnly("teamB");
+    }
+
+    @Test
+    void searchUsernameContains() {
+        Team teamA = new Team("teamA");
+        em.persist(teamA);
+        em.persist(new Member("member1", 10, teamA));
+        em.persist(new Member("Member2", 20, teamA));
+        em.persist(new Member("other", 30, teamA));
+
+        MemberSearchCond cond = new MemberSearchCond();
+        cond.setUsernameContains("mem");
+
+        List<MemberTeamDto> result = memberRepository.search(cond);
+
+        assertThat(result).extracting("username").containsExactly("member1", "Member2");
+    }
+
 
 }
\ No newline at end of file
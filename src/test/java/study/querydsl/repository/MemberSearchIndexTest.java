@@ -0,0 +1,70 @@
+package study.querydsl.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import study.querydsl.dto.MemberSearchCond;
+import study.querydsl.dto.MemberTeamDto;
+
+class MemberSearchIndexTest {
+
+    MemberSearchIndex index;
+
+    @BeforeEach
+    void init() {
+        index = new MemberSearchIndex(null, null, true, 60_000);
+        index.teamSaved(1L, "teamA");
+        index.teamSaved(2L, "teamB");
+        index.memberSaved(11L, "member1", 10, 1L);
+        index.memberSaved(12L, "member2", 20, 1L);
+        index.memberSaved(13L, "member3", 30, 2L);
+        index.memberSaved(14L, "member4", 40, 2L);
+        index.memberSaved(15L, "member5", 40, null);
+    }
+
+    @Test
+    void searchByTeamAndAgeRange() {
+        MemberSearchCond cond = new MemberSearchCond();
+        cond.setAgeGoe(35);
+        cond.setAgeLoe(55);
+        cond.setTeamName("teamB");
+
+        List<MemberTeamDto> result = index.search(cond);
+
+        assertThat(result).extracting("username").containsExactly("member4");
+        assertThat(result).extracting("teamId").containsExactly(2L);
+    }
+
+    @Test
+    void emptyCondReturnsAllInIdOrder() {
+        List<MemberTeamDto> result = index.search(new MemberSearchCond());
+
+        assertThat(result).extracting("memberId").containsExactly(11L, 12L, 13L, 14L, 15L);
+    }
+
+    @Test
+    void ageRangeOnly() {
+        MemberSearchCond cond = new MemberSearchCond();
+        cond.setAgeGoe(20);
+        cond.setAgeLoe(40);
+
+        assertThat(index.search(cond)).extracting("username")
+                .containsExactly("member2", "member3", "member4", "member5");
+    }
+
+    @Test
+    void writesAreVisibleToNextSearch() {
+        MemberSearchCond cond = new MemberSearchCond();
+        cond.setUsername("member1");
+        assertThat(index.search(cond)).extracting("teamName").containsExactly("teamA");
+
+        index.memberSaved(11L, "member1", 10, 2L);
+        index.teamSaved(2L, "teamC");
+        assertThat(index.search(cond)).extracting("teamName").containsExactly("teamC");
+
+        index.memberRemoved(11L);
+        assertThat(index.search(cond)).isEmpty();
+    }
+}
@@ -0,0 +1,79 @@
+package study.querydsl.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import study.querydsl.dto.MemberSearchCond;
+import study.querydsl.dto.MemberSearchShapeStat;
+
+class MemberSearchMetricsTest {
+
+    @Test
+    void shapeIsBitmaskOfFilledFields() {
+        MemberSearchCond cond = new MemberSearchCond();
+        assertThat(MemberSearchMetrics.shape(cond)).isZero();
+        assertThat(MemberSearchMetrics.shapeName(0)).isEqualTo("none");
+
+        cond.setTeamName("teamB");
+        cond.setAgeGoe(35);
+        cond.setUsername(" "); // 공백은 조건이 아니다
+        int shape = MemberSearchMetrics.shape(cond);
+        assertThat(MemberSearchMetrics.shapeName(shape)).isEqualTo("teamName+ageGoe");
+    }
+
+    @Test
+    void depthBuckets() {
+        assertThat(MemberSearchMetrics.depth(Pageable.unpaged())).isZero();
+        assertThat(MemberSearchMetrics.depth(PageRequest.of(0, 10))).isEqualTo(1);
+        assertThat(MemberSearchMetrics.depth(PageRequest.of(9, 10))).isEqualTo(2);
+        assertThat(MemberSearchMetrics.depth(PageRequest.of(10, 10))).isEqualTo(3);
+    }
+
+    @Test
+    void recordsPerShapeAndDepth() {
+        MemberSearchMetrics metrics = new MemberSearchMetrics(new SimpleMeterRegistry());
+        MemberSearchCond byTeam = new MemberSearchCond();
+        byTeam.setTeamName("teamA");
+
+        metrics.record(MemberSearchMetrics.SEARCH_PAGE_COMPLEX, byTeam, PageRequest.of(0, 10), System.nanoTime(), 10);
+        metrics.record(MemberSearchMetrics.SEARCH_PAGE_COMPLEX, byTeam, PageRequest.of(0, 10), System.nanoTime(), 4);
+        metrics.record(MemberSearchMetrics.SEARCH, new MemberSearchCond(), Pageable.unpaged(),
+                System.nanoTime() - 50_000_000L, 100);
+
+        List<MemberSearchShapeStat> stats = metrics.stats();
+
+        assertThat(stats).hasSize(2);
+        MemberSearchShapeStat slowest = stats.get(0);
+        assertThat(slowest.getMethod()).isEqualTo("search");
+        assertThat(slowest.getShape()).isEqualTo("none");
+        assertThat(slowest.getDepth()).isEqualTo("unpaged");
+        assertThat(slowest.getMaxMs()).isGreaterThanOrEqualTo(50);
+
+        MemberSearchShapeStat byTeamStat = stats.get(1);
+        assertThat(byTeamStat.getShape()).isEqualTo("teamName");
+        assertThat(byTeamStat.getDepth()).isEqualTo("first");
+        assertThat(byTeamStat.getCount()).isEqualTo(2);
+        assertThat(byTeamStat.getMaxRows()).isEqualTo(10);
+        assertThat(byTeamStat.getMeanRows()).isEqualTo(7);
+    }
+
+    @Test
+    void unrecordedCallsAreIgnored() {
+        MemberSearchMetrics metrics = new MemberSearchMetrics(new SimpleMeterRegistry());
+        MemberSearchCond cond = new MemberSearchCond();
+
+        int rows = metrics.unrecorded(() -> {
+            metrics.record(MemberSearchMetrics.SEARCH, cond, Pageable.unpaged(), System.nanoTime(), 3);
+            return 3;
+        });
+
+        assertThat(rows).isEqualTo(3);
+        assertThat(metrics.stats()).isEmpty();
+        metrics.record(MemberSearchMetrics.SEARCH, cond, Pageable.unpaged(), System.nanoTime(), 3);
+        assertThat(metrics.stats()).hasSize(1);
+    }
+}
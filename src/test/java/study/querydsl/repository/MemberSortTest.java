@@ -0,0 +1,40 @@
+package study.querydsl.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static study.querydsl.entity.QMember.member;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Sort;
+
+class MemberSortTest {
+
+    @Test
+    void unsortedFallsBackToId() {
+        assertThat(MemberSort.orderBy(Sort.unsorted())).containsExactly(member.id.asc());
+    }
+
+    @Test
+    void whitelistedKeyGetsIdTiebreaker() {
+        assertThat(MemberSort.orderBy(Sort.by("age").descending()))
+                .containsExactly(member.age.desc(), member.id.desc());
+    }
+
+    @Test
+    void onlyFirstWhitelistedKeyIsUsed() {
+        Sort sort = Sort.by(Sort.Order.asc("password"), Sort.Order.desc("username").ignoreCase(),
+                Sort.Order.asc("age"));
+
+        assertThat(MemberSort.orderBy(sort)).containsExactly(member.username.desc(), member.id.desc());
+    }
+
+    @Test
+    void idSortHasNoDuplicateTiebreaker() {
+        assertThat(MemberSort.orderBy(Sort.by(Sort.Order.desc("memberId")))).containsExactly(member.id.desc());
+    }
+
+    @Test
+    void joinedColumnIsNotSortable() {
+        assertThat(MemberSort.orderBy(Sort.by("teamName"))).containsExactly(member.id.asc());
+        assertThat(MemberSort.supported(Sort.by("teamName", "age", "password"))).isEqualTo(Sort.by("age"));
+    }
+}
@@ -0,0 +1,160 @@
+package study.querydsl.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import study.querydsl.dto.MemberKeysetPage;
+import study.querydsl.dto.MemberSearchCond;
+import study.querydsl.dto.MemberTeamDto;
+
+class ShardedMemberRepositoryTest {
+
+    private MemberShards shards;
+    private ShardedMemberRepository repository;
+    private final List<MemberTeamDto> all = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        shards = new MemberShards(List.of(), 3, 2, "sa", "");
+        repository = new ShardedMemberRepository(shards, null, false);
+        repository.init();
+
+        for (int t = 0; t < 5; t++) {
+            String teamName = "team" + t;
+            long teamId = repository.saveTeam(teamName);
+            for (int i = 0; i < 20; i++) {
+                String username = "member" + t + "-" + i;
+                int age = (i * 7 + t) % 30;
+                all.add(new MemberTeamDto(repository.saveMember(username, age, teamId), username, age, teamId, teamName));
+            }
+        }
+        all.add(new MemberTeamDto(repository.saveMember("loner", 40, null), "loner", 40, null, null));
+    }
+
+    @AfterEach
+    void tearDown() {
+        shards.close();
+    }
+
+    @Test
+    void teamScopedSearchHitsOwningShardOnly() {
+        MemberSearchCond cond = new MemberSearchCond();
+        cond.setTeamName("team3");
+
+        List<MemberTeamDto> result = repository.search(cond);
+
+        assertThat(result).hasSize(20).allMatch(m -> "team3".equals(m.getTeamName()));
+        assertThat(result).extracting(MemberTeamDto::getTeamId)
+                .allMatch(id -> shards.shardOf(id) == shards.shardOf(result.get(0).getTeamId()));
+
+        cond.setTeamName("nobody");
+        assertThat(repository.search(cond)).isEmpty();
+    }
+
+    @Test
+    void unknownTeamNameIsLookedUpOnEveryShard() {
+        // 디렉터리를 거치지 않고 다른 인스턴스가 샤드 1 에 만든 팀
+        long teamId = 1_000 * 3 + 1;
+        shards.shard(1).update("insert into team (id, name, version) values (:id, 'remote', 0)",
+                new MapSqlParameterSource("id", teamId));
+        shards.shard(1).update("insert into member (member_id, username, age, team_id, version)"
+                + " values (:id, 'remoteMember', 30, :teamId, 0)",
+                new MapSqlParameterSource("id", 1_000 * 3 + 1).addValue("teamId", teamId));
+        MemberSearchCond cond = new MemberSearchCond();
+        cond.setTeamName("remote");
+
+        assertThat(repository.search(cond)).extracting(MemberTeamDto::getUsername).containsExactly("remoteMember");
+        assertThat(repository.searchPage(cond, PageRequest.of(0, 10)).getTotalElements()).isEqualTo(1);
+    }
+
+    @Test
+    void unscopedSearchIsMergedById() {
+        List<MemberTeamDto> result = repository.search(new MemberSearchCond());
+
+        assertThat(result).usingRecursiveFieldByFieldElementComparator()
+                .containsExactlyElementsOf(sorted(Comparator.comparing(MemberTeamDto::getMemberId)));
+    }
+
+    @Test
+    void globalPageMatchesSingleDatabaseOrder() {
+        MemberSearchCond cond = new MemberSearchCond();
+        cond.setAgeGoe(10);
+        Comparator<MemberTeamDto> byAgeDesc = Comparator.comparingInt(MemberTeamDto::getAge)
+                .thenComparing(MemberTeamDto::getMemberId).reversed();
+        List<MemberTeamDto> expected = all.stream().filter(m -> m.getAge() >= 10)
+                .sorted(byAgeDesc).collect(Collectors.toList());
+
+        Page<MemberTeamDto> page = repository.searchPage(cond, PageRequest.of(2, 7, Sort.by("age").descending()));
+
+        assertThat(page.getTotalElements()).isEqualTo(expected.size());
+        assertThat(page.getContent()).usingRecursiveFieldByFieldElementComparator()
+                .containsExactlyElementsOf(expected.subList(14, 21));
+    }
+
+    @Test
+    void unsupportedSortFallsBackToMemberId() { // MemberSort 와 같이 teamName 정렬은 받지 않는다
+        Page<MemberTeamDto> page = repository.searchPage(new MemberSearchCond(), PageRequest.of(0, 3, Sort.by("teamName")));
+
+        assertThat(page.getContent()).usingRecursiveFieldByFieldElementComparator()
+                .containsExactlyElementsOf(sorted(Comparator.comparing(MemberTeamDto::getMemberId)).subList(0, 3));
+        assertThat(page.getTotalElements()).isEqualTo(all.size());
+    }
+
+    @Test
+    void backfillCopiesPrimaryIntoEmptyShards() {
+        MemberShards primary = new MemberShards(List.of(), 1, 1, "sa", "");
+        MemberShards target = new MemberShards(List.of(), 3, 2, "sa", "");
+        try {
+            primary.shard(0).getJdbcTemplate().execute("insert into team (id, name, version) values (10, 'teamA', 0)");
+            primary.shard(0).getJdbcTemplate().execute("insert into team (id, name, version) values (11, 'teamB', 0)");
+            primary.shard(0).getJdbcTemplate().execute("insert into member (member_id, username, age, team_id, version)"
+                    + " values (20, 'member1', 10, 10, 0), (21, 'member2', 20, 11, 0), (22, 'loner', 30, null, 0)");
+            ShardedMemberRepository backfilled = new ShardedMemberRepository(target, primary.shard(0), true);
+            backfilled.init();
+
+            MemberSearchCond cond = new MemberSearchCond();
+            cond.setTeamName("teamB");
+            assertThat(backfilled.search(cond)).extracting(MemberTeamDto::getUsername).containsExactly("member2");
+            assertThat(backfilled.search(new MemberSearchCond())).extracting(MemberTeamDto::getMemberId)
+                    .containsExactly(20L, 21L, 22L);
+            // 복사한 id 뒤에서 새 id 를 만든다
+            assertThat(backfilled.saveMember("member3", 40, 10L)).isGreaterThan(22L);
+
+            // 이미 데이터가 있으면 다시 복사하지 않는다
+            new ShardedMemberRepository(target, primary.shard(0), true).init();
+            assertThat(backfilled.search(new MemberSearchCond())).hasSize(4);
+        } finally {
+            target.close();
+            primary.close();
+        }
+    }
+
+    @Test
+    void keysetWalkVisitsEveryRowOnce() {
+        List<Long> visited = new ArrayList<>();
+        Long after = null;
+        do {
+            MemberKeysetPage page = repository.searchAfter(new MemberSearchCond(), after, 13);
+            page.getContent().forEach(m -> visited.add(m.getMemberId()));
+            after = page.getNextAfter();
+        } while (after != null);
+
+        assertThat(visited).containsExactlyElementsOf(
+                sorted(Comparator.comparing(MemberTeamDto::getMemberId)).stream()
+                        .map(MemberTeamDto::getMemberId).collect(Collectors.toList()));
+    }
+
+    private List<MemberTeamDto> sorted(Comparator<MemberTeamDto> order) {
+        return all.stream().sorted(order).collect(Collectors.toList());
+    }
+}
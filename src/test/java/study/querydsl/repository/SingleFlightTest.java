@@ -0,0 +1,90 @@
+package study.querydsl.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+import study.querydsl.repository.SingleFlight.Outcome;
+
+class SingleFlightTest {
+
+    @Test
+    void concurrentCallsShareOneExecution() throws Exception {
+        SingleFlight<String, Integer> singleFlight = new SingleFlight<>(0);
+        AtomicInteger executions = new AtomicInteger();
+        AtomicInteger joined = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+
+        List<Future<Integer>> futures = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            futures.add(executor.submit(() -> singleFlight.execute("key", () -> {
+                executions.incrementAndGet();
+                await(release);
+                return 42;
+            }, outcome -> {
+                if (outcome == Outcome.JOINED) {
+                    joined.incrementAndGet();
+                }
+            })));
+        }
+
+        // leader 가 loader 안에서 대기하는 동안 나머지가 합류하도록 기다린다
+        while (joined.get() < threads - 1) {
+            Thread.onSpinWait();
+        }
+        release.countDown();
+
+        for (Future<Integer> future : futures) {
+            assertThat(future.get(5, TimeUnit.SECONDS)).isEqualTo(42);
+        }
+        executor.shutdown();
+
+        assertThat(executions.get()).isEqualTo(1);
+        assertThat(singleFlight.size()).isZero();
+    }
+
+    @Test
+    void ttlReusesCompletedResult() {
+        SingleFlight<String, Integer> singleFlight = new SingleFlight<>(60_000);
+        AtomicInteger executions = new AtomicInteger();
+        List<Outcome> outcomes = new ArrayList<>();
+
+        singleFlight.execute("key", executions::incrementAndGet, outcomes::add);
+        Integer second = singleFlight.execute("key", executions::incrementAndGet, outcomes::add);
+
+        assertThat(second).isEqualTo(1);
+        assertThat(outcomes).containsExactly(Outcome.LEADER, Outcome.CACHED);
+    }
+
+    @Test
+    void failureIsNotCached() {
+        SingleFlight<String, Integer> singleFlight = new SingleFlight<>(60_000);
+
+        assertThatThrownBy(() -> singleFlight.execute("key", () -> {
+            throw new IllegalStateException("db down");
+        }, outcome -> {
+        })).isInstanceOf(IllegalStateException.class);
+
+        assertThat(singleFlight.execute("key", () -> 1, outcome -> {
+        })).isEqualTo(1);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package study.querydsl.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.p6spy.engine.common.StatementInformation;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import study.querydsl.dto.SlowQuery;
+
+class SlowQueryRecorderTest {
+
+    SlowQueryRecorder recorder;
+
+    @BeforeEach
+    void init() {
+        recorder = new SlowQueryRecorder(null, 100, 3, false);
+    }
+
+    @Test
+    void ignoresFastStatements() {
+        recorder.onAfterAnyExecute(statement("select 1", "select 1"), TimeUnit.MILLISECONDS.toNanos(99), null);
+
+        assertThat(recorder.recent()).isEmpty();
+    }
+
+    @Test
+    void recordsSlowStatementWithRedactedStrings() {
+        recorder.onAfterAnyExecute(
+                statement("select * from member where username=? and age>=?",
+                        "select * from member where username='kim''s' and age>=20"),
+                TimeUnit.MILLISECONDS.toNanos(150), null);
+
+        SlowQuery recorded = recorder.recent().get(0);
+        assertThat(recorded.getElapsedMillis()).isEqualTo(150);
+        assertThat(recorded.getSql()).isEqualTo("select * from member where username=? and age>=?");
+        assertThat(recorded.getSqlWithValues()).isEqualTo("select * from member where username='***' and age>=***");
+        assertThat(recorded.getPlan()).isNull();
+    }
+
+    @Test
+    void redactMasksNumbersButNotIdentifiers() {
+        assertThat(SlowQueryRecorder.redact(
+                "select member0_.member_id from member member0_ where member0_.age between 10 and 20.5 limit 3"))
+                .isEqualTo("select member0_.member_id from member member0_ where member0_.age between *** and *** limit ***");
+        assertThat(SlowQueryRecorder.redact("select 1 from member where username='kim 42'"))
+                .isEqualTo("select *** from member where username='***'");
+    }
+
+    @Test
+    void keepsOnlyLatestEntriesNewestFirst() {
+        for (int i = 1; i <= 5; i++) {
+            recorder.record("select " + i, "select " + i, TimeUnit.SECONDS.toNanos(1), null);
+        }
+
+        assertThat(recorder.recent()).extracting("sql").containsExactly("select 5", "select 4", "select 3");
+    }
+
+    private static StatementInformation statement(String sql, String sqlWithValues) {
+        StatementInformation information = mock(StatementInformation.class);
+        when(information.getSql()).thenReturn(sql);
+        when(information.getSqlWithValues()).thenReturn(sqlWithValues);
+        return information;
+    }
+}
@@ -0,0 +1,102 @@
+package study.querydsl.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import javax.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+import study.querydsl.dto.TeamStatDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.service.TeamStatReconciler;
+
+@Transactional
+@SpringBootTest
+class TeamStatRepositoryTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    TeamStatRepository teamStatRepository;
+
+    @Autowired
+    TeamStatReconciler teamStatReconciler;
+
+    Team teamA;
+    Team teamB;
+    Member member1;
+
+    @BeforeEach
+    void init() {
+        teamA = new Team("teamA");
+        teamB = new Team("teamB");
+        em.persist(teamA);
+        em.persist(teamB);
+
+        member1 = new Member("member1", 10, teamA);
+        em.persist(member1);
+        em.persist(new Member("member2", 20, teamA));
+        em.persist(new Member("member3", 30, teamB));
+        em.persist(new Member("member4", 40, teamB));
+        em.flush();
+    }
+
+    @Test
+    void statsMaintainedOnInsert() { // QueryDslBasicTest.groupBy 와 같은 결과를 member 스캔 없이
+        List<TeamStatDto> stats = teamStatRepository.findTeamStats();
+
+        assertThat(stats).extracting("teamName").containsExactly("teamA", "teamB");
+        assertThat(stats).extracting("memberCount").containsExactly(2L, 2L);
+        assertThat(stats).extracting("ageAvg").containsExactly(15.0, 35.0);
+        assertThat(stats).extracting("ageMin").containsExactly(10, 30);
+        assertThat(stats).extracting("ageMax").containsExactly(20, 40);
+    }
+
+    @Test
+    void statsMaintainedOnTeamChangeAndDelete() {
+        member1.setTeam(teamB);
+        em.flush();
+
+        TeamStatDto statA = teamStatRepository.findTeamStat(teamA.getId()).get();
+        TeamStatDto statB = teamStatRepository.findTeamStat(teamB.getId()).get();
+        assertThat(statA.getMemberCount()).isEqualTo(1);
+        assertThat(statA.getAgeMin()).isEqualTo(20);
+        assertThat(statB.getMemberCount()).isEqualTo(3);
+        assertThat(statB.getAgeMin()).isEqualTo(10);
+
+        em.remove(member1);
+        em.flush();
+
+        statB = teamStatRepository.findTeamStat(teamB.getId()).get();
+        assertThat(statB.getMemberCount()).isEqualTo(2);
+        assertThat(statB.getAgeSum()).isEqualTo(70);
+        assertThat(statB.getAgeMin()).isEqualTo(30);
+        assertThat(teamStatReconciler.reconcile()).isEmpty();
+    }
+
+    @Test
+    void statsUseLoadedStateWhenModifiedThenDeleted() {
+        member1.setTeam(teamB);
+        member1.setAge(99);
+        em.remove(member1); // 위 변경은 flush 되지 않는다
+        em.flush();
+
+        assertThat(teamStatRepository.findTeamStat(teamA.getId()).get().getMemberCount()).isEqualTo(1);
+        assertThat(teamStatRepository.findTeamStat(teamB.getId()).get().getMemberCount()).isEqualTo(2);
+        assertThat(teamStatReconciler.reconcile()).isEmpty();
+    }
+
+    @Test
+    void reconcileRepairsBulkUpdateDrift() {
+        em.createQuery("update Member m set m.age = m.age + 1").executeUpdate();
+
+        assertThat(teamStatReconciler.reconcile()).hasSize(2);
+        assertThat(teamStatReconciler.reconcile()).isEmpty();
+        assertThat(teamStatRepository.findTeamStat(teamA.getId()).get().getAgeSum()).isEqualTo(32);
+    }
+}
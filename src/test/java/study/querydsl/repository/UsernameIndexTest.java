@@ -0,0 +1,74 @@
+package study.querydsl.repository;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static study.querydsl.entity.QMember.member;
+
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class UsernameIndexTest {
+
+    UsernameIndex index;
+
+    @BeforeEach
+    void init() {
+        index = new UsernameIndex(null, null, true, 60_000);
+        index.load(Map.of());
+
+        index.memberSaved(1L, "member1");
+        index.memberSaved(2L, "member2");
+        index.memberSaved(3L, "Kim Member");
+        index.memberSaved(4L, "lee");
+    }
+
+    @Test
+    void containsIgnoringCase() {
+        assertThat(index.findIdsContaining("MEMBER")).containsExactly(1L, 2L, 3L);
+        assertThat(index.findIdsContaining("ber2")).containsExactly(2L);
+        assertThat(index.findIdsContaining("nothing")).isEmpty();
+    }
+
+    @Test
+    void shortTermFallsBackToDb() { // 3글자 미만은 trigram 으로 못 좁히므로 쓰지 않는다
+        assertThat(index.findIdsContaining("e")).isNull();
+        assertThat(index.findIdsContaining("le")).isNull();
+        assertThat(index.findIdsContaining("lee")).containsExactly(4L);
+    }
+
+    @Test
+    void tooManyIdsFallBackToDb() {
+        Map<Long, String> many = new HashMap<>();
+        for (long id = 1; id <= UsernameIndex.MAX_IDS + 1; id++) {
+            many.put(id, "common" + id);
+        }
+        index.load(many);
+
+        assertThat(index.findIdsContaining("common")).isNull();
+        assertThat(index.findIdsContaining("common1000")).containsExactly(1000L);
+        assertThat(index.usernameContains("common")).isEqualTo(member.username.containsIgnoreCase("common"));
+    }
+
+    @Test
+    void idsArePaddedToPowerOfTwo() { // 3건은 마지막 id 를 반복해 4개로 바인딩한다
+        assertThat(index.usernameContains("member")).isEqualTo(member.id.in(1L, 2L, 3L, 3L));
+        assertThat(index.usernameContains("ber2")).isEqualTo(member.id.in(2L));
+    }
+
+    @Test
+    void renameAndRemove() {
+        index.memberSaved(1L, "renamed");
+        assertThat(index.findIdsContaining("member")).containsExactly(2L, 3L);
+        assertThat(index.findIdsContaining("name")).containsExactly(1L);
+
+        index.memberRemoved(2L);
+        assertThat(index.findIdsContaining("member")).containsExactly(3L);
+    }
+
+    @Test
+    void notReadyReturnsNull() {
+        index.invalidate();
+        assertThat(index.findIdsContaining("member")).isNull();
+    }
+}
@@ -0,0 +1,80 @@
+package study.querydsl.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import study.querydsl.dto.BulkLoadSpec;
+
+class BulkDataGeneratorTest {
+
+    @Test
+    void skewedTeamSizes() {
+        BulkLoadSpec spec = new BulkLoadSpec();
+        spec.setTeams(10);
+        spec.setTeamSkew(1.0);
+        BulkDataGenerator generator = new BulkDataGenerator(spec);
+
+        int[] counts = new int[10];
+        Random random = new Random(1);
+        for (int i = 0; i < 100_000; i++) {
+            counts[generator.nextTeam(random)]++;
+        }
+
+        // Zipf(1) 이면 첫 팀이 마지막 팀의 약 10배
+        assertThat(counts[0]).isGreaterThan(counts[9] * 5);
+        assertThat(counts[0]).isGreaterThan(counts[1]);
+    }
+
+    @Test
+    void uniformTeamsWithoutSkew() {
+        BulkLoadSpec spec = new BulkLoadSpec();
+        spec.setTeams(4);
+        spec.setTeamSkew(0);
+        BulkDataGenerator generator = new BulkDataGenerator(spec);
+
+        int[] counts = new int[4];
+        Random random = new Random(1);
+        for (int i = 0; i < 40_000; i++) {
+            counts[generator.nextTeam(random)]++;
+        }
+
+        for (int count : counts) {
+            assertThat(count).isBetween(9_000, 11_000);
+        }
+    }
+
+    @Test
+    void agesFollowHistogram() {
+        BulkLoadSpec spec = new BulkLoadSpec();
+        spec.setAgeHistogram("20-29:3, 60-60:1");
+        BulkDataGenerator generator = new BulkDataGenerator(spec);
+
+        int twenties = 0;
+        int sixty = 0;
+        Random random = new Random(1);
+        for (int i = 0; i < 40_000; i++) {
+            int age = generator.nextAge(random);
+            if (age >= 20 && age <= 29) {
+                twenties++;
+            } else if (age == 60) {
+                sixty++;
+            }
+        }
+
+        assertThat(twenties + sixty).isEqualTo(40_000);
+        assertThat(twenties).isBetween(29_000, 31_000);
+    }
+
+    @Test
+    void sameSeedSameData() {
+        BulkDataGenerator generator = new BulkDataGenerator(new BulkLoadSpec());
+        Random first = new Random(7);
+        Random second = new Random(7);
+
+        for (int i = 0; i < 100; i++) {
+            assertThat(generator.nextAge(first)).isEqualTo(generator.nextAge(second));
+            assertThat(generator.nextTeam(first)).isEqualTo(generator.nextTeam(second));
+        }
+    }
+}
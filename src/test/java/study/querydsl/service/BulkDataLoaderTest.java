@@ -0,0 +1,31 @@
+package study.querydsl.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import org.junit.jupiter.api.Test;
+import study.querydsl.dto.BulkLoadSpec;
+
+class BulkDataLoaderTest {
+
+    // 검증은 적재 스레드를 띄우기 전에 끝나므로 의존성 없이 확인할 수 있다
+    BulkDataLoader loader = new BulkDataLoader(null, null, null, null);
+
+    @Test
+    void rejectsNonPositiveSizes() {
+        BulkLoadSpec chunk = new BulkLoadSpec();
+        chunk.setChunkSize(0);
+        BulkLoadSpec batch = new BulkLoadSpec();
+        batch.setBatchSize(-1);
+        BulkLoadSpec threads = new BulkLoadSpec();
+        threads.setThreads(0);
+
+        assertThatThrownBy(() -> loader.start(chunk)).isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("chunkSize");
+        assertThatThrownBy(() -> loader.start(batch)).isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("batchSize");
+        assertThatThrownBy(() -> loader.start(threads)).isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("threads");
+        assertThat(loader.getProgress()).isNull();
+    }
+}
@@ -0,0 +1,115 @@
+package study.querydsl.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import study.querydsl.service.MemberCsvImporter.Progress;
+
+/**
+ * chunk 마다 커밋하므로 @Transactional 을 쓰지 않고 직접 정리한다.
+ */
+@SpringBootTest(properties = "member.import.chunk-size=3")
+class MemberCsvImporterTest {
+
+    @Autowired
+    MemberCsvImporter memberCsvImporter;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @AfterEach
+    void cleanUp() {
+        jdbcTemplate.update("delete from member where username like 'csv-%'");
+        jdbcTemplate.update("delete from team_stat where team_id in (select id from team where name like 'csv-%')");
+        jdbcTemplate.update("delete from team where name like 'csv-%'");
+    }
+
+    @Test
+    void importsInChunksAndReportsBadRows() throws Exception {
+        Progress progress = memberCsvImporter.importCsv(csv(
+                "teamName,username,age,note",
+                "csv-teamA,csv-1,10,",
+                "csv-teamA,csv-2,20,x",
+                "csv-teamB,csv-3,30,",
+                "csv-teamB,csv-4,abc,", // 5번째 줄
+                "",
+                "\"csv-teamB\",\"csv-5, jr\",40,",
+                ",csv-6,50,"));
+
+        assertThat(progress.isRunning()).isFalse();
+        assertThat(progress.getRead()).isEqualTo(6);
+        assertThat(progress.getWritten()).isEqualTo(5);
+        assertThat(progress.getFailed()).isEqualTo(1);
+        assertThat(progress.getErrors()).extracting("line").containsExactly(5L);
+
+        assertThat(jdbcTemplate.queryForList("select m.username from member m join team t on m.team_id = t.id"
+                + " where t.name = 'csv-teamB' order by m.username", String.class))
+                .containsExactly("csv-3", "csv-5, jr");
+        assertThat(jdbcTemplate.queryForObject(
+                "select count(*) from member where username = 'csv-6' and team_id is null", Long.class))
+                .isEqualTo(1);
+        assertThat(teamStat("csv-teamA")).containsEntry("MEMBER_COUNT", 2L).containsEntry("AGE_SUM", 30L);
+    }
+
+    @Test
+    void existingUsernameIsUpdated() throws Exception {
+        memberCsvImporter.importCsv(csv("username,age,teamName", "csv-1,10,csv-teamA", "csv-2,20,csv-teamA"));
+
+        Progress progress = memberCsvImporter.importCsv(csv("username,age,teamName", "csv-1,50,csv-teamB"));
+
+        assertThat(progress.getWritten()).isEqualTo(1);
+        assertThat(jdbcTemplate.queryForList("select age from member where username = 'csv-1'", Integer.class))
+                .containsExactly(50);
+        // 떠난 팀과 들어간 팀 모두 다시 계산된다
+        assertThat(teamStat("csv-teamA")).containsEntry("MEMBER_COUNT", 1L).containsEntry("AGE_MIN", 20);
+        assertThat(teamStat("csv-teamB")).containsEntry("MEMBER_COUNT", 1L).containsEntry("AGE_MAX", 50);
+        assertThat(jdbcTemplate.queryForObject("select count(*) from team where name = 'csv-teamA'", Long.class))
+                .isEqualTo(1);
+    }
+
+    @Test
+    void ambiguousUsernameIsRejected() throws Exception {
+        // unique 제약이 없어 엔티티 쪽에서 같은 username 이 두 번 들어간 경우
+        jdbcTemplate.update("insert into member (member_id, username, age, version)"
+                + " values (next value for hibernate_sequence, 'csv-dup', 10, 0)");
+        jdbcTemplate.update("insert into member (member_id, username, age, version)"
+                + " values (next value for hibernate_sequence, 'csv-dup', 20, 0)");
+
+        Progress progress = memberCsvImporter.importCsv(csv("username,age", "csv-dup,99", "csv-1,30"));
+
+        assertThat(progress.getWritten()).isEqualTo(1);
+        assertThat(progress.getErrors()).extracting("line").containsExactly(2L);
+        assertThat(jdbcTemplate.queryForList("select age from member where username = 'csv-dup' order by age",
+                Integer.class)).containsExactly(10, 20);
+    }
+
+    @Test
+    void headerIsRequired() {
+        assertThatThrownBy(() -> memberCsvImporter.importCsv(csv("name,teamName", "csv-1,csv-teamA")))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void splitHandlesQuotes() {
+        assertThat(MemberCsvImporter.Header.split("a,\"b,c\",\"d\"\"e\",")).containsExactly("a", "b,c", "d\"e", "");
+    }
+
+    private Map<String, Object> teamStat(String teamName) {
+        return jdbcTemplate.queryForMap("select s.member_count, s.age_sum, s.age_min, s.age_max from team_stat s"
+                + " join team t on s.team_id = t.id where t.name = ?", teamName);
+    }
+
+    private static InputStream csv(String... lines) {
+        return new ByteArrayInputStream(String.join("\n", List.of(lines)).getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,37 @@
+package study.querydsl.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.StringWriter;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import study.querydsl.dto.MemberTeamDto;
+
+class MemberExportServiceTest {
+
+    @Test
+    void partitionsCoverWholeRangeWithoutOverlap() {
+        List<long[]> ranges = MemberExportService.partitions(5, 104, 8);
+
+        assertThat(ranges).hasSizeLessThanOrEqualTo(8);
+        assertThat(ranges.get(0)[0]).isEqualTo(5);
+        assertThat(ranges.get(ranges.size() - 1)[1]).isEqualTo(104);
+        for (int i = 1; i < ranges.size(); i++) {
+            assertThat(ranges.get(i)[0]).isEqualTo(ranges.get(i - 1)[1] + 1);
+        }
+    }
+
+    @Test
+    void smallRangeIsNotSplitBelowOneId() {
+        assertThat(MemberExportService.partitions(1, 3, 16)).hasSize(3);
+    }
+
+    @Test
+    void writesCsvWithQuoting() throws Exception {
+        StringWriter writer = new StringWriter();
+        MemberExportService.writeCsv(writer, new MemberTeamDto(1L, "kim, \"jr\"", 10, null, null));
+        MemberExportService.writeCsv(writer, new MemberTeamDto(2L, "member2", 20, 3L, "teamA"));
+
+        assertThat(writer.toString()).isEqualTo("1,\"kim, \"\"jr\"\"\",10,,\n2,member2,20,3,teamA\n");
+    }
+}
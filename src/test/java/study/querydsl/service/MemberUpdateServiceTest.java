@@ -0,0 +1,135 @@
+package study.querydsl.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import javax.persistence.EntityManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.repository.MemberRepository;
+
+/**
+ * 여러 스레드가 겹치는 member 를 동시에 고치는 스트레스 테스트.
+ * 다른 스레드가 커밋된 데이터를 봐야 하므로 @Transactional 을 쓰지 않고 직접 정리한다.
+ */
+@SpringBootTest(properties = {"member.update.max-attempts=1000", "member.update.max-backoff-ms=20"})
+class MemberUpdateServiceTest {
+
+    static final int THREADS = 16;
+    static final int UPDATES_PER_THREAD = 50;
+    static final int MEMBERS = 4;
+
+    @Autowired
+    MemberUpdateService memberUpdateService;
+
+    @Autowired
+    MemberRepository memberRepository;
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    TransactionTemplate transactionTemplate;
+
+    List<Long> memberIds = new ArrayList<>();
+    List<Long> teamIds = new ArrayList<>();
+
+    @BeforeEach
+    void before() {
+        transactionTemplate.executeWithoutResult(status -> {
+            Team teamA = new Team("teamA");
+            Team teamB = new Team("teamB");
+            em.persist(teamA);
+            em.persist(teamB);
+            teamIds.add(teamA.getId());
+            teamIds.add(teamB.getId());
+            for (int i = 0; i < MEMBERS; i++) {
+                Member member = new Member("member" + i, 0, i % 2 == 0 ? teamA : teamB);
+                em.persist(member);
+                memberIds.add(member.getId());
+            }
+        });
+    }
+
+    @AfterEach
+    void after() {
+        transactionTemplate.executeWithoutResult(status -> {
+            memberIds.forEach(id -> em.remove(em.find(Member.class, id)));
+            teamIds.forEach(id -> em.remove(em.find(Team.class, id)));
+        });
+    }
+
+    @Test
+    void concurrentIncrementsAreNotLost() throws Exception {
+        runConcurrentIncrements(4, 10);
+    }
+
+    // 처리량은 장비/부하에 따라 흔들리므로 기본 test 에서 빼고 ./gradlew benchmark 로만 돌린다
+    @Test
+    @Tag("benchmark")
+    void concurrentIncrementThroughput() throws Exception {
+        long elapsedMillis = runConcurrentIncrements(THREADS, UPDATES_PER_THREAD);
+
+        int total = THREADS * UPDATES_PER_THREAD;
+        System.out.println("updates = " + total + ", elapsed = " + elapsedMillis + "ms, throughput = "
+                + (total * 1000L / elapsedMillis) + "/s");
+    }
+
+    private long runConcurrentIncrements(int threads, int updatesPerThread) throws Exception {
+        AtomicIntegerArray expected = new AtomicIntegerArray(MEMBERS);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int thread = t;
+            futures.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < updatesPerThread; i++) {
+                    int target = (thread + i) % MEMBERS;
+                    memberUpdateService.addAge(memberIds.get(target), 1);
+                    expected.incrementAndGet(target);
+                }
+                return null;
+            }));
+        }
+
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(2, TimeUnit.MINUTES);
+        }
+        long elapsedMillis = Math.max(1, (System.nanoTime() - begin) / 1_000_000);
+        executor.shutdown();
+
+        for (int i = 0; i < MEMBERS; i++) {
+            Member member = memberRepository.findById(memberIds.get(i)).get();
+            assertThat(member.getAge()).isEqualTo(expected.get(i));
+            assertThat(member.getVersion()).isEqualTo(expected.get(i));
+        }
+        return elapsedMillis;
+    }
+
+    @Test
+    void moveTeam() {
+        Long memberId = memberIds.get(0);
+
+        memberUpdateService.moveTeam(memberId, teamIds.get(1));
+
+        Long teamId = transactionTemplate.execute(status -> em.find(Member.class, memberId).getTeam().getId());
+        assertThat(teamId).isEqualTo(teamIds.get(1));
+    }
+}
@@ -0,0 +1,39 @@
+package study.querydsl.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+import study.querydsl.dto.MemberSearchCond;
+
+class QueryWarmupTest {
+
+    @Test
+    void coversEveryPredicateCombination() {
+        MemberSearchCond sample = new MemberSearchCond();
+        sample.setUsername("member1");
+        sample.setUsernameContains("emb");
+        sample.setTeamName("teamA");
+        sample.setAgeGoe(10);
+        sample.setAgeLoe(20);
+
+        List<MemberSearchCond> shapes = QueryWarmup.shapes(sample);
+
+        assertThat(shapes).hasSize(32);
+        assertThat(shapes.stream().distinct().collect(Collectors.toList())).hasSize(32);
+        assertThat(shapes.get(0)).isEqualTo(new MemberSearchCond());
+        assertThat(shapes.get(31)).isEqualTo(sample);
+    }
+
+    @Test
+    void sampleFillsMissingValues() {
+        MemberSearchCond sample = QueryWarmup.sample(null, null, null);
+
+        assertThat(sample.getUsername()).isEqualTo("member1");
+        assertThat(sample.getUsernameContains()).isEqualTo("emb");
+        assertThat(sample.getTeamName()).isEqualTo("teamA");
+        assertThat(sample.getAgeGoe()).isEqualTo(10);
+        assertThat(sample.getAgeLoe()).isEqualTo(20);
+    }
+}